@@ -2,15 +2,20 @@ package anticope.rejects.commands;
 
 import anticope.rejects.arguments.EnumArgumentType;
 import anticope.rejects.utils.WorldGenUtils;
+import anticope.rejects.utils.seeds.Seed;
 import anticope.rejects.utils.seeds.Seeds;
+import anticope.rejects.utils.worldgen.LocateProgress;
 
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
-import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
 import com.seedfinding.mccore.version.MCVersion;
 
+import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.commands.Command;
+import meteordevelopment.meteorclient.events.world.TickEvent;
+import meteordevelopment.meteorclient.systems.config.Config;
 import meteordevelopment.meteorclient.utils.Utils;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
+import meteordevelopment.orbit.EventHandler;
 import net.minecraft.command.CommandSource;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
@@ -19,19 +24,27 @@ import net.minecraft.util.math.Vec3d;
 import cubitect.Cubiomes;
 import cubitect.Cubiomes.Pos;
 
+import java.util.List;
+import java.util.concurrent.*;
+
 public class LocateCommand extends Command {
 
-	private final static DynamicCommandExceptionType NOT_FOUND = new DynamicCommandExceptionType(o -> {
-		if (o instanceof Cubiomes.StructureType) {
-			return Text.literal(String.format(
-					"%s not found.",
-					Utils.nameToTitle(o.toString().replaceAll("_", "-"))));
-		}
-		return Text.literal("Not found.");
-	});
+	// keep searches off the client thread, but never let them take over every core
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 4)), r -> {
+				Thread thread = new Thread(r, "Rejects Locate");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+	private static final int PROGRESS_INTERVAL = 60;
+
+	private final List<Search> searches = new CopyOnWriteArrayList<>();
+	private int timer;
 
 	public LocateCommand() {
 		super("locate", "Locates structures.", "loc");
+		MeteorClient.EVENT_BUS.subscribe(this);
 	}
 
 	@Override
@@ -40,55 +53,120 @@ public class LocateCommand extends Command {
 				.then(argument("feature", EnumArgumentType.enumArgument(Cubiomes.StructureType.Village)).executes(ctx -> {
 					Cubiomes.StructureType feature = EnumArgumentType.getEnum(ctx, "feature", Cubiomes.StructureType.Village);
 					BlockPos playerPos = mc.player.getBlockPos();
-					long seed = Seeds.get().getSeed().seed;
-					MCVersion version = Seeds.get().getSeed().version;
-					Cubiomes.MCVersion cubiomesVersion = null;
-					if (version.isNewerOrEqualTo(MCVersion.v1_20)) {
-						cubiomesVersion = Cubiomes.MCVersion.MC_1_20;
-					} else if (version.isNewerOrEqualTo(MCVersion.v1_19)) {
-						switch (version) {
-							case v1_19:
-							case v1_19_1:
-								cubiomesVersion = Cubiomes.MCVersion.MC_1_19;
-								break;
-							case v1_19_2:
-							case v1_19_3:
-							case v1_19_4:
-								cubiomesVersion = Cubiomes.MCVersion.MC_1_19_2;
-								break;
-							default:
-								throw new IllegalStateException("Unexpected value: " + version);
+					Seed seed = Seeds.get().getSeed();
+					Cubiomes.MCVersion cubiomesVersion = seed != null ? getCubiomesVersion(seed.version) : null;
+
+					Search search = new Search(feature, playerPos, cubiomesVersion != null);
+					searches.add(search);
+					search.future = CompletableFuture.supplyAsync(() -> {
+						if (cubiomesVersion != null) {
+							return Cubiomes.GetNearestStructure(feature, playerPos.getX(), playerPos.getZ(), seed.seed, cubiomesVersion);
 						}
-					} else if (version.isNewerOrEqualTo(MCVersion.v1_18)) {
-						cubiomesVersion = Cubiomes.MCVersion.MC_1_18;
-					}
-					Pos pos = null;
-					if (cubiomesVersion != null) {
-						pos = Cubiomes.GetNearestStructure(feature, playerPos.getX(), playerPos.getZ(), seed,
-								cubiomesVersion);
-					} else {
-						BlockPos bpos = WorldGenUtils.locateFeature(feature, playerPos);
-						pos = new Pos();
+						BlockPos bpos = WorldGenUtils.locateFeature(feature, playerPos, search.progress);
+						if (bpos == null) return null;
+						Pos pos = new Pos();
 						pos.x = bpos.getX();
 						pos.z = bpos.getZ();
+						return pos;
+					}, EXECUTOR);
+					search.future.whenComplete((pos, ex) -> mc.execute(() -> finish(search, pos, ex)));
 
-					}
-					if (pos != null) {
-						// Calculate distance
-						int distance = (int) Math.hypot(pos.x - playerPos.getX(), pos.z - playerPos.getZ());
-						MutableText text = Text.literal(String.format(
-								"%s located at ",
-								Utils.nameToTitle(feature.toString().replaceAll("_", "-"))));
-						Vec3d coords = new Vec3d(pos.x, 0, pos.z);
-						text.append(ChatUtils.formatCoords(coords));
-						text.append(".");
-						if (distance > 0) {
-							text.append(String.format(" (%d blocks away)", distance));
-						}
-						info(text);
-						return SINGLE_SUCCESS;
-					}
-					throw NOT_FOUND.create(feature);
+					info("Searching for %s. Use %slocate cancel to stop.", search.name(), Config.get().prefix.get());
+					return SINGLE_SUCCESS;
 				})));
+
+		builder.then(literal("cancel").executes(ctx -> {
+			if (searches.isEmpty()) {
+				error("No searches running.");
+				return SINGLE_SUCCESS;
+			}
+			for (Search search : searches) {
+				search.progress.cancel();
+				search.future.cancel(false);
+			}
+			info("Cancelled %d search(es).", searches.size());
+			searches.clear();
+			return SINGLE_SUCCESS;
+		}));
+	}
+
+	@EventHandler
+	private void onTick(TickEvent.Post event) {
+		if (searches.isEmpty() || ++timer < PROGRESS_INTERVAL) return;
+		timer = 0;
+		for (Search search : searches) {
+			long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - search.started);
+			if (search.nativeSearch) {
+				info("Still searching for %s (%ds).", search.name(), seconds);
+			} else {
+				info("Still searching for %s: %d regions scanned, radius %d blocks (%ds).",
+						search.name(), search.progress.getScanned(), search.progress.getRadius(), seconds);
+			}
+		}
+	}
+
+	private void finish(Search search, Pos pos, Throwable ex) {
+		// cancelled searches were already reported and removed
+		if (!searches.remove(search) || search.progress.isCancelled()) return;
+		if (ex != null) {
+			error("Failed to locate %s.", search.name());
+			return;
+		}
+		if (pos == null) {
+			error("%s not found.", search.name());
+			return;
+		}
+
+		BlockPos playerPos = search.center;
+		int distance = (int) Math.hypot(pos.x - playerPos.getX(), pos.z - playerPos.getZ());
+		MutableText text = Text.literal(String.format("%s located at ", search.name()));
+		Vec3d coords = new Vec3d(pos.x, 0, pos.z);
+		text.append(ChatUtils.formatCoords(coords));
+		text.append(".");
+		if (distance > 0) {
+			text.append(String.format(" (%d blocks away)", distance));
+		}
+		info(text);
+	}
+
+	private static Cubiomes.MCVersion getCubiomesVersion(MCVersion version) {
+		if (version.isNewerOrEqualTo(MCVersion.v1_20)) {
+			return Cubiomes.MCVersion.MC_1_20;
+		} else if (version.isNewerOrEqualTo(MCVersion.v1_19)) {
+			switch (version) {
+				case v1_19:
+				case v1_19_1:
+					return Cubiomes.MCVersion.MC_1_19;
+				case v1_19_2:
+				case v1_19_3:
+				case v1_19_4:
+					return Cubiomes.MCVersion.MC_1_19_2;
+				default:
+					throw new IllegalStateException("Unexpected value: " + version);
+			}
+		} else if (version.isNewerOrEqualTo(MCVersion.v1_18)) {
+			return Cubiomes.MCVersion.MC_1_18;
+		}
+		return null;
+	}
+
+	private static class Search {
+		private final Cubiomes.StructureType feature;
+		private final BlockPos center;
+		// cubiomes searches natively and can't report progress or stop early
+		private final boolean nativeSearch;
+		private final LocateProgress progress = new LocateProgress();
+		private final long started = System.nanoTime();
+		private CompletableFuture<Pos> future;
+
+		private Search(Cubiomes.StructureType feature, BlockPos center, boolean nativeSearch) {
+			this.feature = feature;
+			this.center = center;
+			this.nativeSearch = nativeSearch;
+		}
+
+		private String name() {
+			return Utils.nameToTitle(feature.toString().replaceAll("_", "-"));
+		}
 	}
 }
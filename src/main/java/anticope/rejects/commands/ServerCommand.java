@@ -2,6 +2,8 @@ package anticope.rejects.commands;
 
 import anticope.rejects.utils.portscanner.PScanRunner;
 import anticope.rejects.utils.portscanner.PortScannerManager;
+import anticope.rejects.utils.portscanner.ServiceFingerprinter;
+import anticope.rejects.utils.server.DnsCache;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
@@ -19,6 +21,7 @@ import net.minecraft.util.Formatting;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /*
     Ported from Cornos
@@ -30,6 +33,12 @@ public class ServerCommand extends Command {
     private final static SimpleCommandExceptionType INVALID_RANGE = new SimpleCommandExceptionType(Text.literal("Invalid range"));
 
     private final static HashMap<Integer, String> ports = new HashMap<>();
+    // stays well under the usual 1024 open files limit, the game needs some of those too
+    private final static int PORT_SCAN_WINDOW = 512;
+    private final static int PORT_SCAN_TIMEOUT_MS = 1000;
+    private final static int FINGERPRINT_CONCURRENCY = 8;
+    private final static int FINGERPRINT_TIMEOUT_MS = 2000;
+    private final static int[] BEDROCK_PORTS = {19132, 19133};
 
     public ServerCommand() {
         super("server", "Prints server information");
@@ -51,81 +60,136 @@ public class ServerCommand extends Command {
     @Override
     public void build(LiteralArgumentBuilder<CommandSource> builder) {
         builder.then(literal("ports").executes(ctx -> {
-            scanKnownPorts(getAddress());
+            withAddress(this::scanKnownPorts);
             return SINGLE_SUCCESS;
         }));
         builder.then(literal("ports").then(literal("known").executes(ctx -> {
-            scanKnownPorts(getAddress());
+            withAddress(this::scanKnownPorts);
+            return SINGLE_SUCCESS;
+        })));
+        builder.then(literal("ports").then(literal("fingerprint").executes(ctx -> {
+            withAddress(address -> scanPorts(address, knownPorts(), true));
             return SINGLE_SUCCESS;
         })));
         builder.then(literal("ports").then(argument("from", IntegerArgumentType.integer(0)).then(argument("to", IntegerArgumentType.integer(1)).executes(ctx -> {
-            scanRange(getAddress(), IntegerArgumentType.getInteger(ctx, "from"),
-                    IntegerArgumentType.getInteger(ctx, "to"));
+            int from = IntegerArgumentType.getInteger(ctx, "from");
+            int to = IntegerArgumentType.getInteger(ctx, "to");
+            if (to < from || to > 65535) throw INVALID_RANGE.create();
+            withAddress(address -> scanRange(address, from, to));
+            return SINGLE_SUCCESS;
+        }).then(literal("fingerprint").executes(ctx -> {
+            int from = IntegerArgumentType.getInteger(ctx, "from");
+            int to = IntegerArgumentType.getInteger(ctx, "to");
+            if (to < from || to > 65535) throw INVALID_RANGE.create();
+            withAddress(address -> {
+                BitSet portSet = new BitSet(65536);
+                portSet.set(from, to + 1);
+                scanPorts(address, portSet, true);
+            });
             return SINGLE_SUCCESS;
-        }))));
+        })))));
     }
 
-    private InetAddress getAddress() throws CommandSyntaxException {
+    // resolving can take a while, so the scan starts from the resolver's callback instead of blocking the command
+    private void withAddress(Consumer<InetAddress> action) throws CommandSyntaxException {
         if (mc.isIntegratedServerRunning()) {
             try {
-                return InetAddress.getLocalHost();
-            } catch (UnknownHostException e) {
-                throw ADDRESS_ERROR.create();
-            }
-        } else {
-            ServerInfo server = mc.getCurrentServerEntry();
-            if (server == null) throw ADDRESS_ERROR.create();
-            try {
-                return InetAddress.getByName(server.address);
+                action.accept(InetAddress.getLocalHost());
             } catch (UnknownHostException e) {
                 throw ADDRESS_ERROR.create();
             }
+            return;
         }
+
+        ServerInfo server = mc.getCurrentServerEntry();
+        if (server == null) throw ADDRESS_ERROR.create();
+        DnsCache.resolveServer(server.address).whenComplete((address, e) -> mc.execute(() -> {
+            if (e != null) error("Couldn't obtain server address");
+            else action.accept(address.getAddress());
+        }));
     }
 
-    private void scanPorts(InetAddress address, Collection<Integer> port_list) {
-        info("Started scanning %d ports", port_list.size());
-        PScanRunner pScanRunner = new PScanRunner(address, 5, 3, 200, port_list, scanResults -> {
-            int open_ports = 0;
-            info("Open ports:");
-            for (PortScannerManager.ScanResult result : scanResults) {
-                if (result.isOpen()) {
-                    info(formatPort(result.getPort(), address));
-                    open_ports++;
-                }
+    // open ports are printed as they turn up, with a progress line every few seconds
+    private void scanPorts(InetAddress address, BitSet portSet, boolean fingerprint) {
+        info("Started scanning %d ports", portSet.cardinality());
+        PScanRunner pScanRunner = new PScanRunner(address, PORT_SCAN_WINDOW, PORT_SCAN_TIMEOUT_MS, portSet, new PScanRunner.Listener() {
+            @Override
+            public void onOpen(int port) {
+                mc.execute(() -> info(formatPort(port, address)));
+            }
+
+            @Override
+            public void onProgress(int scanned, int total, double portsPerSecond) {
+                long eta = portsPerSecond > 0 ? Math.round((total - scanned) / portsPerSecond) : -1;
+                mc.execute(() -> info("Scanned %d/%d ports (%.0f/s, %s left)", scanned, total, portsPerSecond, eta < 0 ? "?" : eta + "s"));
+            }
+
+            @Override
+            public void onFinished(BitSet open, int scanned) {
+                mc.execute(() -> info("Open count: %d/%d", open.cardinality(), scanned));
+                if (fingerprint) fingerprint(address, open, portSet);
             }
-            info("Open count: %d/%d", open_ports, scanResults.size());
         });
         PortScannerManager.scans.add(pScanRunner);
     }
 
+    // second stage, only the ports that turned out open get probed for what is behind them
+    private void fingerprint(InetAddress address, BitSet open, BitSet scanned) {
+        ServiceFingerprinter fingerprinter = new ServiceFingerprinter(address, FINGERPRINT_CONCURRENCY, FINGERPRINT_TIMEOUT_MS);
+        mc.execute(() -> info("Identifying services on %d ports...", open.cardinality()));
+        for (int port = open.nextSetBit(0); port >= 0; port = port < 65535 ? open.nextSetBit(port + 1) : -1) {
+            int p = port;
+            fingerprinter.tcp(port, label -> mc.execute(() -> info(formatPort(p, address, label))));
+        }
+        // bedrock only listens on udp, so the tcp scan can't have found it
+        for (int port : BEDROCK_PORTS) {
+            if (!scanned.get(port)) continue;
+            fingerprinter.bedrock(port, label -> {
+                if (label != null) mc.execute(() -> info(formatPort(port, address, label + " (udp)")));
+            });
+        }
+    }
+
+    private BitSet knownPorts() {
+        BitSet portSet = new BitSet(65536);
+        ports.keySet().forEach(portSet::set);
+        return portSet;
+    }
+
     private void scanKnownPorts(InetAddress address) {
-        scanPorts(address, ports.keySet());
+        scanPorts(address, knownPorts(), false);
     }
 
-    private void scanRange(InetAddress address, int min, int max) throws CommandSyntaxException {
-        if (max < min) throw INVALID_RANGE.create();
-        List<Integer> port_list = new LinkedList<>();
-        for (int i = min; i <= max; i++) port_list.add(i);
-        scanPorts(address, port_list);
+    private void scanRange(InetAddress address, int min, int max) {
+        BitSet portSet = new BitSet(65536);
+        portSet.set(min, max + 1);
+        scanPorts(address, portSet, false);
     }
 
     private MutableText formatPort(int port, InetAddress address) {
+        return formatPort(port, address, null);
+    }
+
+    /**
+     * @param service what a fingerprint found on the port, falls back to the usual service for it
+     */
+    private MutableText formatPort(int port, InetAddress address, String service) {
         MutableText text = Text.literal(String.format("- %s%d%s ", Formatting.GREEN, port, Formatting.GRAY));
-        if (ports.containsKey(port)) {
-            text.append(ports.get(port));
-            if (ports.get(port).startsWith("HTTP") || ports.get(port).startsWith("FTP")) {
+        String name = service != null ? service : ports.get(port);
+        if (name != null) {
+            text.append(name);
+            if (name.startsWith("HTTP") || name.startsWith("FTP")) {
                 text.setStyle(text.getStyle()
                         .withClickEvent(new ClickEvent(
                                 Action.OPEN_URL,
-                                String.format("%s://%s:%d", ports.get(port).toLowerCase(), address.getHostAddress(), port)
+                                String.format("%s://%s:%d", name.split(" ")[0].toLowerCase(), address.getHostAddress(), port)
                         ))
                         .withHoverEvent(new HoverEvent(
                                 HoverEvent.Action.SHOW_TEXT,
                                 Text.literal("Open in browser")
                         ))
                 );
-            } else if (Objects.equals(ports.get(port), "DynMap")) {
+            } else if (Objects.equals(name, "DynMap")) {
                 text.setStyle(text.getStyle()
                         .withClickEvent(new ClickEvent(
                                 ClickEvent.Action.OPEN_URL,
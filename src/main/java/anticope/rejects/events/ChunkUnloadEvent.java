@@ -0,0 +1,14 @@
+package anticope.rejects.events;
+
+import net.minecraft.util.math.ChunkPos;
+
+public class ChunkUnloadEvent {
+    private static final ChunkUnloadEvent INSTANCE = new ChunkUnloadEvent();
+
+    public ChunkPos pos;
+
+    public static ChunkUnloadEvent get(ChunkPos pos) {
+        INSTANCE.pos = pos;
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,17 @@
+package anticope.rejects.events;
+
+import anticope.rejects.utils.PlayerPresence;
+import net.minecraft.world.GameMode;
+
+public class GameModeChangedEvent {
+    private static final GameModeChangedEvent INSTANCE = new GameModeChangedEvent();
+
+    public PlayerPresence.Player player;
+    public GameMode oldGameMode;
+
+    public static GameModeChangedEvent get(PlayerPresence.Player player, GameMode oldGameMode) {
+        INSTANCE.player = player;
+        INSTANCE.oldGameMode = oldGameMode;
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,14 @@
+package anticope.rejects.events;
+
+import anticope.rejects.utils.PlayerPresence;
+
+public class PlayerJoinedEvent {
+    private static final PlayerJoinedEvent INSTANCE = new PlayerJoinedEvent();
+
+    public PlayerPresence.Player player;
+
+    public static PlayerJoinedEvent get(PlayerPresence.Player player) {
+        INSTANCE.player = player;
+        return INSTANCE;
+    }
+}
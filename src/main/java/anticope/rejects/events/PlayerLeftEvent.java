@@ -0,0 +1,14 @@
+package anticope.rejects.events;
+
+import anticope.rejects.utils.PlayerPresence;
+
+public class PlayerLeftEvent {
+    private static final PlayerLeftEvent INSTANCE = new PlayerLeftEvent();
+
+    public PlayerPresence.Player player;
+
+    public static PlayerLeftEvent get(PlayerPresence.Player player) {
+        INSTANCE.player = player;
+        return INSTANCE;
+    }
+}
@@ -1,6 +1,9 @@
 package anticope.rejects.gui.hud;
 
 import anticope.rejects.MeteorRejectsAddon;
+import anticope.rejects.utils.seeds.Seed;
+import anticope.rejects.utils.seeds.Seeds;
+import anticope.rejects.utils.worldgen.SlimeChunkMap;
 import meteordevelopment.meteorclient.renderer.Renderer2D;
 import meteordevelopment.meteorclient.settings.*;
 import meteordevelopment.meteorclient.systems.hud.HudElement;
@@ -11,7 +14,9 @@ import meteordevelopment.meteorclient.systems.modules.render.ESP;
 import meteordevelopment.meteorclient.systems.waypoints.Waypoint;
 import meteordevelopment.meteorclient.systems.waypoints.Waypoints;
 import meteordevelopment.meteorclient.utils.render.color.Color;
+import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 import meteordevelopment.meteorclient.utils.render.color.SettingColor;
+import meteordevelopment.meteorclient.utils.world.Dimension;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.util.math.BlockPos;
@@ -55,6 +60,21 @@ public class RadarHud extends HudElement {
             .build()
     );
 
+    private final Setting<Boolean> slimeChunks = sgGeneral.add(new BoolSetting.Builder()
+            .name("slime-chunks")
+            .description("Show slime chunks calculated from the world seed.")
+            .defaultValue(false)
+            .build()
+    );
+
+    private final Setting<SettingColor> slimeChunkColor = sgGeneral.add(new ColorSetting.Builder()
+            .name("slime-chunk-color")
+            .description("Color of slime chunks.")
+            .defaultValue(new SettingColor(0, 255, 0, 48))
+            .visible(slimeChunks::get)
+            .build()
+    );
+
     private final Setting<Double> scale = sgGeneral.add(new DoubleSetting.Builder()
             .name("scale")
             .description("The scale.")
@@ -93,6 +113,7 @@ public class RadarHud extends HudElement {
             double height = getHeight();
             Renderer2D.COLOR.begin();
             Renderer2D.COLOR.quad(x, y, width, height, backgroundColor.get());
+            if (slimeChunks.get()) renderSlimeChunks(width, height);
             Renderer2D.COLOR.render(null);
             if (mc.world != null) {
                 for (Entity entity : mc.world.getEntities()) {
@@ -125,5 +146,30 @@ public class RadarHud extends HudElement {
         });
         
     }
+
+    private void renderSlimeChunks(double width, double height) {
+        Seed seed = Seeds.get().getSeed();
+        if (seed == null || PlayerUtils.getDimension() != Dimension.Overworld) return;
+        SlimeChunkMap map = SlimeChunkMap.getNow(seed, mc.player.getChunkPos().x, mc.player.getChunkPos().z);
+        if (map == null) return;
+
+        double blockSize = scale.get() * zoom.get();
+        double chunkSize = 16 * blockSize;
+        int rangeX = (int) Math.ceil(width / 2 / chunkSize) + 1;
+        int rangeZ = (int) Math.ceil(height / 2 / chunkSize) + 1;
+        int chunkX = mc.player.getChunkPos().x;
+        int chunkZ = mc.player.getChunkPos().z;
+        for (int cx = chunkX - rangeX; cx <= chunkX + rangeX; cx++) {
+            for (int cz = chunkZ - rangeZ; cz <= chunkZ + rangeZ; cz++) {
+                if (!map.isSlimeChunk(cx, cz)) continue;
+                double x1 = Math.max(0, ((cx << 4) - mc.player.getX()) * blockSize + width / 2);
+                double y1 = Math.max(0, ((cz << 4) - mc.player.getZ()) * blockSize + height / 2);
+                double x2 = Math.min(width, ((cx << 4) + 16 - mc.player.getX()) * blockSize + width / 2);
+                double y2 = Math.min(height, ((cz << 4) + 16 - mc.player.getZ()) * blockSize + height / 2);
+                if (x2 <= x1 || y2 <= y1) continue;
+                Renderer2D.COLOR.quad(x + x1, y + y1, x2 - x1, y2 - y1, slimeChunkColor.get());
+            }
+        }
+    }
     
 }
@@ -2,9 +2,15 @@ package anticope.rejects.gui.servers;
 
 import anticope.rejects.mixin.MultiplayerScreenAccessor;
 import anticope.rejects.mixin.ServerListAccessor;
+import anticope.rejects.utils.server.DnsCache;
+import anticope.rejects.utils.server.MServerInfo;
+import anticope.rejects.utils.server.ServerScanner;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
+import meteordevelopment.meteorclient.gui.widgets.WLabel;
 import meteordevelopment.meteorclient.gui.widgets.containers.WTable;
+import meteordevelopment.meteorclient.gui.widgets.input.WIntEdit;
+import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WCheckbox;
 import meteordevelopment.meteorclient.utils.render.color.Color;
 import net.minecraft.SharedConstants;
@@ -12,12 +18,16 @@ import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.multiplayer.MultiplayerScreen;
 import net.minecraft.client.gui.screen.multiplayer.MultiplayerServerListWidget;
 import net.minecraft.client.network.ServerInfo;
+import net.minecraft.text.Text;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CleanUpScreen extends WindowScreen {
+    private static final int TIMEOUT_MS = 5000;
+    private static final String UNKNOWN_HOST = "\u00a74Can't resolve hostname";
+
     private final MultiplayerScreen multiplayerScreen;
     private final WCheckbox removeAll;
     private final WCheckbox removeFailed;
@@ -26,6 +36,14 @@ public class CleanUpScreen extends WindowScreen {
     private final WCheckbox removeGriefMe;
     private final WCheckbox removeDuplicates;
     private final WCheckbox rename;
+    private final WCheckbox refresh;
+    private final WIntEdit maxPings;
+    private final WLabel progressLabel;
+    private final AtomicInteger refreshed = new AtomicInteger();
+    private WButton executeButton;
+    private ServerScanner scanner;
+    private int refreshTotal;
+    private boolean closed;
 
     public CleanUpScreen(GuiTheme theme, MultiplayerScreen multiplayerScreen, Screen parent) {
         super(theme, "Clean Up");
@@ -38,6 +56,9 @@ public class CleanUpScreen extends WindowScreen {
         removeAll = theme.checkbox(false);
         removeDuplicates = theme.checkbox(true);
         rename = theme.checkbox(true);
+        refresh = theme.checkbox(true);
+        maxPings = theme.intEdit(128, 1, 1024, 1, 1024);
+        progressLabel = theme.label("");
     }
 
     @Override
@@ -66,7 +87,108 @@ public class CleanUpScreen extends WindowScreen {
         table.add(theme.label("Rename all Servers:"));
         table.add(rename).widget();
         table.row();
-        table.add(theme.button("Execute!")).expandX().widget().action = this::cleanUp;
+        table.add(theme.label("Refresh all first:"));
+        table.add(refresh).widget();
+        table.row();
+        table.add(theme.label("Max. pings:"));
+        table.add(maxPings).widget();
+        table.row();
+        executeButton = table.add(theme.button("Execute!")).expandX().widget();
+        executeButton.action = this::execute;
+        add(progressLabel).expandX();
+    }
+
+    private void execute() {
+        if (scanner != null) return;
+        if (refresh.checked && !removeAll.checked) refreshAll();
+        else cleanUp();
+    }
+
+    @Override
+    public void tick() {
+        if (scanner == null) return;
+        int done = refreshed.get();
+        int filled = refreshTotal == 0 ? 20 : done * 20 / refreshTotal;
+        progressLabel.set("Refreshing [" + "#".repeat(filled) + "-".repeat(20 - filled) + "] " + done + " / " + refreshTotal);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (scanner != null) scanner.cancel();
+        super.close();
+    }
+
+    // the multiplayer screen only pings entries as they scroll into view, so ping the whole list at
+    // once and run the rules on what comes back
+    private void refreshAll() {
+        List<ServerInfo> servers = new ArrayList<>(((ServerListAccessor) multiplayerScreen.getServerList()).getServers());
+        executeButton.visible = false;
+        refreshed.set(0);
+        refreshTotal = servers.size();
+        progressLabel.set("Resolving...");
+
+        // one batch, entries sharing a host only cost a single lookup
+        DnsCache.resolveAll(servers.stream().map(server -> server.address).toList()).thenAccept(resolved -> {
+            Map<InetSocketAddress, List<ServerInfo>> targets = new LinkedHashMap<>();
+            List<ServerInfo> unknown = new ArrayList<>();
+            for (ServerInfo server : servers) {
+                InetSocketAddress target = resolved.get(server.address);
+                if (target != null) targets.computeIfAbsent(target, t -> new ArrayList<>()).add(server);
+                else unknown.add(server);
+            }
+
+            client.execute(() -> {
+                if (closed) return;
+                for (ServerInfo server : unknown) {
+                    server.ping = -1L;
+                    server.label = Text.literal(UNKNOWN_HOST);
+                }
+                refreshed.addAndGet(unknown.size());
+                scanner = new ServerScanner(targets.keySet().iterator(), maxPings.get(), TIMEOUT_MS, false, new ServerScanner.Listener() {
+                    @Override
+                    public void onResponse(InetSocketAddress address, MServerInfo info) {
+                        client.execute(() -> targets.get(address).forEach(server -> update(server, info)));
+                        refreshed.addAndGet(targets.get(address).size());
+                    }
+
+                    @Override
+                    public void onFailure(InetSocketAddress address) {
+                        client.execute(() -> targets.get(address).forEach(server -> update(server, null)));
+                        refreshed.addAndGet(targets.get(address).size());
+                    }
+
+                    @Override
+                    public void onFinished() {
+                        client.execute(() -> {
+                            if (scanner == null || scanner.isCancelled()) return;
+                            scanner = null;
+                            cleanUp();
+                        });
+                    }
+                });
+                scanner.start();
+            });
+        });
+    }
+
+    private static void update(ServerInfo server, MServerInfo info) {
+        if (info == null) {
+            server.ping = -1L;
+            server.label = Text.translatable("multiplayer.status.cannot_connect");
+            server.playerCountLabel = Text.empty();
+            return;
+        }
+        server.ping = info.ping;
+        server.protocolVersion = info.protocolVersion;
+        server.version = toText(info.version);
+        server.label = Text.literal(info.label);
+        server.playerCountLabel = toText(info.playerCountLabel);
+    }
+
+    // the raw pinger fills in translation keys when a server leaves a field out
+    private static Text toText(String value) {
+        return value.startsWith("multiplayer.") ? Text.translatable(value) : Text.literal(value);
     }
 
     private void cleanUp() {
@@ -98,7 +220,7 @@ public class CleanUpScreen extends WindowScreen {
     private boolean isUnknownHost(ServerInfo server) {
         if (server.label == null || server.label.getString() == null) return false;
 
-        return server.label.getString().equals("\u00a74Can't resolve hostname");
+        return server.label.getString().equals(UNKNOWN_HOST);
     }
 
     private boolean isSameProtocol(ServerInfo server) {
@@ -1,7 +1,10 @@
 package anticope.rejects.gui.servers;
 
 import anticope.rejects.mixin.MultiplayerScreenAccessor;
-import anticope.rejects.utils.server.LegacyServerPinger;
+import anticope.rejects.utils.server.DnsCache;
+import anticope.rejects.utils.server.MServerInfo;
+import anticope.rejects.utils.server.ServerScanner;
+import anticope.rejects.utils.server.TargetGenerator;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.WLabel;
@@ -9,15 +12,20 @@ import meteordevelopment.meteorclient.gui.widgets.containers.WTable;
 import meteordevelopment.meteorclient.gui.widgets.input.WIntEdit;
 import meteordevelopment.meteorclient.gui.widgets.input.WTextBox;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.multiplayer.MultiplayerScreen;
 import net.minecraft.client.network.ServerInfo;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class LegacyServerFinderScreen extends WindowScreen {
+    private static final int TIMEOUT_MS = 5000;
     private final MultiplayerScreen multiplayerScreen;
     private final WTextBox ipBox;
     private final WIntEdit maxThreadsBox;
@@ -25,10 +33,13 @@ public class LegacyServerFinderScreen extends WindowScreen {
     private final WLabel stateLabel;
     private final WLabel checkedLabel;
     private final WLabel workingLabel;
-    private ServerFinderState state;
+    private volatile ServerFinderState state;
     private int maxThreads;
-    private int checked;
+    private final LongAdder checked = new LongAdder();
     private int working;
+    private long total;
+    private ServerScanner scanner;
+    private int searchNumber;
 
     public LegacyServerFinderScreen(GuiTheme theme, MultiplayerScreen multiplayerScreen, Screen parent) {
         super(theme, "Legacy Server Discovery");
@@ -63,58 +74,39 @@ public class LegacyServerFinderScreen extends WindowScreen {
 
     private void searchOrCancel() {
         if (state.isRunning()) {
-            state = ServerFinderState.CANCELLED;
+            cancel();
             return;
         }
 
         state = ServerFinderState.RESOLVING;
         maxThreads = maxThreadsBox.get();
-        checked = 0;
+        checked.reset();
         working = 0;
+        total = 0;
 
-        new Thread(this::findServers, "Server Discovery").start();
+        String host = ipBox.get().split(":")[0].trim();
+        MeteorExecutor.execute(() -> findServers(host));
     }
 
-    private void findServers() {
+    private void cancel() {
+        state = ServerFinderState.CANCELLED;
+        if (scanner != null) scanner.cancel();
+    }
+
+    private void findServers(String host) {
         try {
-            InetAddress addr =
-                    InetAddress.getByName(ipBox.get().split(":")[0].trim());
-
-            int[] ipParts = new int[4];
-            for (int i = 0; i < 4; i++)
-                ipParts[i] = addr.getAddress()[i] & 0xff;
-
-            state = ServerFinderState.SEARCHING;
-            ArrayList<LegacyServerPinger> pingers = new ArrayList<>();
-            int[] changes = {0, 1, -1, 2, -2, 3, -3};
-            for (int change : changes)
-                for (int i2 = 0; i2 <= 255; i2++) {
-                    if (state == ServerFinderState.CANCELLED)
-                        return;
-
-                    int[] ipParts2 = ipParts.clone();
-                    ipParts2[2] = ipParts[2] + change & 0xff;
-                    ipParts2[3] = i2;
-                    String ip = ipParts2[0] + "." + ipParts2[1] + "."
-                            + ipParts2[2] + "." + ipParts2[3];
-
-                    LegacyServerPinger pinger = new LegacyServerPinger();
-                    pinger.ping(ip);
-                    pingers.add(pinger);
-                    while (pingers.size() >= maxThreads) {
-                        if (state == ServerFinderState.CANCELLED)
-                            return;
-
-                        updatePingers(pingers);
-                    }
-                }
-            while (!pingers.isEmpty()) {
-                if (state == ServerFinderState.CANCELLED)
-                    return;
-
-                updatePingers(pingers);
-            }
-            state = ServerFinderState.DONE;
+            InetAddress addr = DnsCache.getByName(host);
+            TargetGenerator targets = TargetGenerator.around(addr, 25565);
+
+            mc.execute(() -> {
+                if (state != ServerFinderState.RESOLVING) return;
+                total = targets.size();
+                state = ServerFinderState.SEARCHING;
+                searchNumber++;
+                // same probe as the main finder, with the legacy pings as fallback for old servers
+                scanner = new ServerScanner(targets, maxThreads, TIMEOUT_MS, false, new ScanListener());
+                scanner.start();
+            });
 
         } catch (UnknownHostException e) {
             state = ServerFinderState.UNKNOWN_HOST;
@@ -133,7 +125,7 @@ public class LegacyServerFinderScreen extends WindowScreen {
             maxThreadsBox.set(maxThreads);
         }
         stateLabel.set(state.toString());
-        checkedLabel.set("Checked: " + checked + " / 1792");
+        checkedLabel.set("Checked: " + checked.sum() + " / " + total);
         workingLabel.set("Working: " + working);
         searchButton.visible = !ipBox.get().isEmpty();
     }
@@ -146,34 +138,50 @@ public class LegacyServerFinderScreen extends WindowScreen {
         return false;
     }
 
-    private void updatePingers(ArrayList<LegacyServerPinger> pingers) {
-        for (int i = 0; i < pingers.size(); i++)
-            if (!pingers.get(i).isStillPinging()) {
-                checked++;
-                if (pingers.get(i).isWorking()) {
-                    working++;
-
-                    if (!isServerInList(pingers.get(i).getServerIP())) {
-                        multiplayerScreen.getServerList()
-                                .add(new ServerInfo("Server discovery " + working,
-                                        pingers.get(i).getServerIP(), ServerInfo.ServerType.OTHER), false);
-                        multiplayerScreen.getServerList().saveFile();
-                        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget()
-                                .setSelected(null);
-                        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget()
-                                .setServers(multiplayerScreen.getServerList());
-                    }
-                }
-                pingers.remove(i);
-            }
+    private void addServer(String ip) {
+        if (state != ServerFinderState.SEARCHING) return;
+        working++;
+
+        if (!isServerInList(ip)) {
+            multiplayerScreen.getServerList()
+                    .add(new ServerInfo("Server discovery " + working,
+                            ip, ServerInfo.ServerType.OTHER), false);
+            multiplayerScreen.getServerList().saveFile();
+            ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget()
+                    .setSelected(null);
+            ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget()
+                    .setServers(multiplayerScreen.getServerList());
+        }
     }
 
     @Override
     public void close() {
-        state = ServerFinderState.CANCELLED;
+        cancel();
         super.close();
     }
 
+    private class ScanListener implements ServerScanner.Listener {
+        private final int search = searchNumber;
+
+        @Override
+        public void onResponse(InetSocketAddress address, MServerInfo info) {
+            checked.increment();
+            mc.execute(() -> addServer(info.address));
+        }
+
+        @Override
+        public void onFailure(InetSocketAddress address) {
+            checked.increment();
+        }
+
+        @Override
+        public void onFinished() {
+            mc.execute(() -> {
+                if (state == ServerFinderState.SEARCHING && search == searchNumber) state = ServerFinderState.DONE;
+            });
+        }
+    }
+
     enum ServerFinderState {
         NOT_RUNNING(""),
         SEARCHING("Searching..."),
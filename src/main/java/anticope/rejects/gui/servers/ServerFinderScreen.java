@@ -1,29 +1,53 @@
 package anticope.rejects.gui.servers;
 
+import anticope.rejects.MeteorRejectsAddon;
 import anticope.rejects.mixin.MultiplayerScreenAccessor;
+import anticope.rejects.utils.server.DnsCache;
 import anticope.rejects.utils.server.IServerFinderDoneListener;
 import anticope.rejects.utils.server.MServerInfo;
+import anticope.rejects.utils.server.PingExecutor;
+import anticope.rejects.utils.server.ScanDatabase;
+import anticope.rejects.utils.server.ScanMetrics;
+import anticope.rejects.utils.server.ScanRateController;
 import anticope.rejects.utils.server.ServerPinger;
+import anticope.rejects.utils.server.ServerScanner;
+import anticope.rejects.utils.server.TargetGenerator;
+import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.WLabel;
 import meteordevelopment.meteorclient.gui.widgets.containers.WHorizontalList;
 import meteordevelopment.meteorclient.gui.widgets.containers.WTable;
+import meteordevelopment.meteorclient.gui.widgets.input.WDropdown;
 import meteordevelopment.meteorclient.gui.widgets.input.WIntEdit;
 import meteordevelopment.meteorclient.gui.widgets.input.WTextBox;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WCheckbox;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.multiplayer.MultiplayerScreen;
 import net.minecraft.client.network.ServerInfo;
 
-import java.net.InetAddress;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
 
 public class ServerFinderScreen extends WindowScreen implements IServerFinderDoneListener {
     public static ServerFinderScreen instance = null;
+    private static final int TIMEOUT_MS = 5000;
+    private static final int MIN_TIMEOUT_MS = 500;
+    private static final int FLUSH_INTERVAL = 20;
     private static int searchNumber = 0;
     private final MultiplayerScreen multiplayerScreen;
     private final WTextBox ipBox;
@@ -33,17 +57,33 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
     private final WLabel stateLabel;
     private final WLabel checkedLabel;
     private final WLabel workingLabel;
+    private final WLabel rateLabel;
+    private final WLabel outcomeLabel;
+    private final WLabel[] rttLabels = new WLabel[ScanMetrics.RTT_BUCKETS.length + 1];
     private final WCheckbox scanPortsBox;
-    private final Stack<String> ipsToPing = new Stack<>();
+    private final WCheckbox skipDeadBox;
+    private final WButton exportButton;
+    private final WDropdown<Engine> engineBox;
+    private TargetGenerator targets;
+    private LiveTargets liveTargets;
     private final Object serverFinderLock = new Object();
+    // found servers wait here until the next flush so the list file is written once per batch
+    private final Queue<ServerInfo> pendingServers = new ConcurrentLinkedQueue<>();
+    private final Set<String> knownAddresses = ConcurrentHashMap.newKeySet();
+    private int flushTimer;
     private ServerFinderState state;
     private int maxThreads;
-    private volatile int numActiveThreads;
-    private volatile int checked;
-    private volatile int working;
-    private int targetChecked = 1792;
+    // the thread engine's listeners all run on the client thread
+    private int numActiveThreads;
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder working = new LongAdder();
+    private volatile ScanMetrics metrics;
+    private long addedTargets;
     private ArrayList<String> versionFilters = new ArrayList<>();
     private int playerCountFilter = 0;
+    private ServerScanner scanner;
+    private PingExecutor pingExecutor;
 
     public ServerFinderScreen(GuiTheme theme, MultiplayerScreen multiplayerScreen, Screen parent) {
         super(theme, "Server Discovery");
@@ -56,7 +96,13 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
         checkedLabel = theme.label("");
         searchButton = theme.button("Search");
         workingLabel = theme.label("");
+        rateLabel = theme.label("");
+        outcomeLabel = theme.label("");
+        for (int i = 0; i < rttLabels.length; i++) rttLabels[i] = theme.label("");
         scanPortsBox = theme.checkbox(true);
+        skipDeadBox = theme.checkbox(true);
+        exportButton = theme.button("Export known");
+        engineBox = theme.dropdown(Engine.EventLoop);
         state = ServerFinderState.NOT_RUNNING;
         newSearch();
         instance = this;
@@ -70,6 +116,7 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
     public void initWidgets() {
         add(theme.label("This will search for servers with similar IPs"));
         add(theme.label("to the IP you type into the field below."));
+        add(theme.label("CIDR blocks, ranges and @file lists are scanned as given."));
         add(theme.label("The servers it finds will be added to your server list."));
         WTable table = add(new WTable()).expandX().widget();
         table.add(theme.label("Server address:"));
@@ -81,14 +128,30 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
         table.add(theme.label("Scan ports"));
         table.add(scanPortsBox);
         table.row();
+        table.add(theme.label("Skip dead hosts"));
+        table.add(skipDeadBox);
+        table.row();
+        table.add(theme.label("Engine:"));
+        table.add(engineBox);
+        table.row();
         table.add(theme.label("Versions:"));
         table.add(versionBox).expandX();
         add(stateLabel);
         add(checkedLabel);
         add(workingLabel);
+        add(rateLabel);
+        add(outcomeLabel);
+        WTable rttTable = add(new WTable()).expandX().widget();
+        for (int i = 0; i < rttLabels.length; i++) {
+            rttTable.add(theme.label(ScanMetrics.bucketName(i)));
+            rttTable.add(rttLabels[i]).expandX();
+            rttTable.row();
+        }
         WHorizontalList list = add(theme.horizontalList()).expandX().widget();
         list.add(searchButton).expandX();
+        list.add(exportButton).expandX();
         searchButton.action = this::searchOrCancel;
+        exportButton.action = this::exportKnown;
     }
 
     private void newSearch() {
@@ -97,8 +160,11 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
 
     public void incrementTargetChecked(int amount) {
         synchronized (serverFinderLock) {
-            if (state != ServerFinderState.CANCELLED)
-                targetChecked += amount;
+            if (state != ServerFinderState.CANCELLED) {
+                addedTargets += amount;
+                // port sweep pings report back like the ones started here
+                for (int i = 0; i < amount; i++) metrics.onStart();
+            }
         }
     }
 
@@ -108,17 +174,23 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
 
     private void searchOrCancel() {
         if (state.isRunning()) {
+            dumpMetrics();
             state = ServerFinderState.CANCELLED;
+            if (scanner != null) scanner.cancel();
             return;
         }
 
         state = ServerFinderState.RESOLVING;
         maxThreads = maxThreadsBox.get();
-        ipsToPing.clear();
-        targetChecked = 1792;
+        targets = null;
+        liveTargets = null;
+        addedTargets = 0;
+        skipped.reset();
         numActiveThreads = 0;
-        checked = 0;
-        working = 0;
+        checked.reset();
+        working.reset();
+        metrics = new ScanMetrics();
+        loadKnownAddresses();
 
         newSearch();
 
@@ -141,33 +213,62 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
         }
     }
 
+    // resolving can wait on dns, so the targets are built off the client thread like in the legacy finder
     private void findServers() {
-        try {
-            InetAddress addr = InetAddress.getByName(ipBox.get().split(":")[0].trim());
+        String spec = ipBox.get().trim();
+        int search = searchNumber;
+        MeteorExecutor.execute(() -> {
+            try {
+                TargetGenerator generated = buildTargets(spec);
+                mc.execute(() -> {
+                    if (state == ServerFinderState.RESOLVING && search == searchNumber) startSearch(generated);
+                });
+
+            } catch (UnknownHostException e) {
+                failSearch(search, ServerFinderState.UNKNOWN_HOST);
+
+            } catch (IllegalArgumentException e) {
+                failSearch(search, ServerFinderState.INVALID_TARGETS);
+
+            } catch (Exception e) {
+                e.printStackTrace();
+                failSearch(search, ServerFinderState.ERROR);
+            }
+        });
+    }
+
+    private static TargetGenerator buildTargets(String spec) throws UnknownHostException {
+        // a single address keeps the old behaviour of scanning the subnets around it
+        if (TargetGenerator.isSingleHost(spec)) return TargetGenerator.around(DnsCache.getByName(spec.split(":")[0]), 25565);
+        return TargetGenerator.parse(spec, 25565);
+    }
 
-            int[] ipParts = new int[4];
-            for (int i = 0; i < 4; i++)
-                ipParts[i] = addr.getAddress()[i] & 0xff;
+    private void failSearch(int search, ServerFinderState failure) {
+        mc.execute(() -> {
+            if (state == ServerFinderState.RESOLVING && search == searchNumber) state = failure;
+        });
+    }
+
+    // must run on the client thread
+    private void startSearch(TargetGenerator generated) {
+        try {
+            targets = generated;
+            liveTargets = new LiveTargets(targets, skipDeadBox.checked);
 
             state = ServerFinderState.SEARCHING;
-            int[] changes = {0, 1, -1, 2, -2, 3, -3};
-            for (int change : changes)
-                for (int i2 = 0; i2 <= 255; i2++) {
-                    if (state == ServerFinderState.CANCELLED)
-                        return;
-
-                    int[] ipParts2 = ipParts.clone();
-                    ipParts2[2] = ipParts[2] + change & 0xff;
-                    ipParts2[3] = i2;
-                    String ip = ipParts2[0] + "." + ipParts2[1] + "." + ipParts2[2] + "." + ipParts2[3];
-
-                    ipsToPing.push(ip);
-                }
-            while (numActiveThreads < maxThreads && pingNewIP()) {
+            if (engineBox.get() == Engine.EventLoop) {
+                scanner = new ServerScanner(liveTargets, maxThreads, TIMEOUT_MS, scanPortsBox.checked, new ScanListener(searchNumber))
+                    .metrics(metrics)
+                    .rateController(new ScanRateController(maxThreads * 4, maxThreads * 20, MIN_TIMEOUT_MS, TIMEOUT_MS));
+                scanner.start();
+                return;
             }
 
-        } catch (UnknownHostException e) {
-            state = ServerFinderState.UNKNOWN_HOST;
+            pingExecutor = new PingExecutor(maxThreads);
+            while (numActiveThreads < maxThreads && pingNewIP()) {
+            }
+            // everything may have been skipped as known dead
+            if (numActiveThreads == 0) finishSearch();
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -177,10 +278,11 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
 
     private boolean pingNewIP() {
         synchronized (serverFinderLock) {
-            if (!ipsToPing.isEmpty()) {
-                String ip = ipsToPing.pop();
-                ServerPinger pinger = new ServerPinger(scanPortsBox.checked, searchNumber);
+            if (liveTargets != null && liveTargets.hasNext()) {
+                String ip = liveTargets.next().getHostString();
+                ServerPinger pinger = new ServerPinger(scanPortsBox.checked, searchNumber, pingExecutor);
                 pinger.addServerFinderDoneListener(this);
+                metrics.onStart();
                 pinger.ping(ip);
                 numActiveThreads++;
                 return true;
@@ -197,25 +299,110 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
             maxThreadsBox.set(maxThreads);
         }
         stateLabel.set(state.toString());
-        checkedLabel.set("Checked: " + checked + " / " + targetChecked);
-        workingLabel.set("Working: " + working);
+        long skippedCount = skipped.sum();
+        checkedLabel.set("Checked: " + (checked.sum() + skippedCount) + " / " + getTotalTargets() + (skippedCount > 0 ? " (" + skippedCount + " known dead)" : ""));
+        workingLabel.set("Working: " + working.sum());
         searchButton.visible = !ipBox.get().isEmpty();
+        if (++flushTimer >= FLUSH_INTERVAL) {
+            flushTimer = 0;
+            flushServers();
+            if (state.isRunning() && metrics != null) metrics.sample();
+        }
+        updateMetrics();
+    }
+
+    private void updateMetrics() {
+        ScanMetrics metrics = this.metrics;
+        if (metrics == null) return;
+        long inFlight = engineBox.get() == Engine.EventLoop ? metrics.getInFlight() : numActiveThreads;
+        rateLabel.set(String.format("Rate: %.0f probes/s, in flight: %d", metrics.getProbesPerSecond(), inFlight));
+        outcomeLabel.set(String.format("Responses: %d, timeouts: %d, refused: %d, other: %d",
+                metrics.getResponses(), metrics.getTimeouts(), metrics.getRefused(), metrics.getFailures()));
+
+        long[] histogram = metrics.getRttHistogram();
+        long max = 1;
+        for (long count : histogram) max = Math.max(max, count);
+        for (int i = 0; i < histogram.length; i++) {
+            rttLabels[i].set("|".repeat((int) (histogram[i] * 30 / max)) + " " + histogram[i]);
+        }
+    }
+
+    // one csv per run so different thread counts and engines can be compared afterwards
+    private void dumpMetrics() {
+        ScanMetrics metrics = this.metrics;
+        if (metrics == null || metrics.getStarted() == 0) return;
+        String name = "scan-" + System.currentTimeMillis() + "-" + engineBox.get().name().toLowerCase() + "-" + maxThreads;
+        MeteorExecutor.execute(() -> {
+            try {
+                metrics.writeCsv(new File(MeteorClient.FOLDER, "scan-metrics"), name);
+            } catch (IOException e) {
+                MeteorRejectsAddon.LOG.error("Failed to write scan metrics", e);
+            }
+        });
     }
 
-    private boolean isServerInList(String ip) {
+    // the generator knows exactly how many addresses it will produce, port sweeps add to that as they go
+    private long getTotalTargets() {
+        synchronized (serverFinderLock) {
+            return (targets != null ? targets.size() : 0) + addedTargets;
+        }
+    }
+
+    private void loadKnownAddresses() {
+        knownAddresses.clear();
         for (int i = 0; i < multiplayerScreen.getServerList().size(); i++)
-            if (multiplayerScreen.getServerList().get(i).address.equals(ip))
-                return true;
+            knownAddresses.add(multiplayerScreen.getServerList().get(i).address);
+        for (ServerInfo server : pendingServers) knownAddresses.add(server.address);
+    }
 
-        return false;
+    // must run on the client thread
+    private void flushServers() {
+        if (pendingServers.isEmpty()) return;
+        ServerInfo server;
+        while ((server = pendingServers.poll()) != null) {
+            multiplayerScreen.getServerList().add(server, false);
+        }
+        multiplayerScreen.getServerList().saveFile();
+        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setSelected(null);
+        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setServers(multiplayerScreen.getServerList());
     }
 
     @Override
     public void close() {
+        if (state.isRunning()) dumpMetrics();
         state = ServerFinderState.CANCELLED;
+        if (scanner != null) scanner.cancel();
+        flushServers();
+        MeteorExecutor.execute(() -> ScanDatabase.get().save());
         super.close();
     }
 
+    private void finishSearch() {
+        if (state == ServerFinderState.DONE) return;
+        state = ServerFinderState.DONE;
+        dumpMetrics();
+        MeteorExecutor.execute(() -> ScanDatabase.get().save());
+    }
+
+    // adds every server that answered its last probe and passes the filters, without probing anything
+    private void exportKnown() {
+        parseVersionFilters();
+        loadKnownAddresses();
+        for (String ip : ScanDatabase.get().getAlive(result -> {
+            MServerInfo info = new MServerInfo("", "");
+            info.version = result.version();
+            info.playerCount = result.players();
+            return filterPass(info);
+        })) {
+            addServer(ip, null);
+        }
+    }
+
+    private static InetSocketAddress toAddress(String ip) {
+        int colon = ip.lastIndexOf(':');
+        return new InetSocketAddress(ip.substring(0, colon), Integer.parseInt(ip.substring(colon + 1)));
+    }
+
     private boolean filterPass(MServerInfo info) {
         if (info == null)
             return false;
@@ -233,42 +420,127 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
     public void onServerDone(ServerPinger pinger) {
         if (state == ServerFinderState.CANCELLED || pinger == null || pinger.getSearchNumber() != searchNumber)
             return;
-        synchronized (serverFinderLock) {
-            checked++;
-            numActiveThreads--;
-        }
+        checked.increment();
+        numActiveThreads--;
+        if (pinger.isWorking()) metrics.onResponse(pinger.getServerInfo().ping);
+        else metrics.onFailure(pinger.getFailure());
         if (pinger.isWorking()) {
-            if (!isServerInList(pinger.getServerIP()) && filterPass(pinger.getServerInfo())) {
-                synchronized (serverFinderLock) {
-                    working++;
-                    multiplayerScreen.getServerList().add(new ServerInfo("Server discovery #" + working, pinger.getServerIP(), ServerInfo.ServerType.OTHER), false);
-                    multiplayerScreen.getServerList().saveFile();
-                    ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setSelected(null);
-                    ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setServers(multiplayerScreen.getServerList());
-                }
-            }
+            ScanDatabase.get().recordResponse(toAddress(pinger.getServerIP()), pinger.getServerInfo());
+            addServer(pinger.getServerIP(), pinger.getServerInfo());
+        } else {
+            ScanDatabase.get().recordFailure(toAddress(pinger.getServerIP()));
         }
         while (numActiveThreads < maxThreads && pingNewIP()) ;
+        if (checked.sum() + skipped.sum() == getTotalTargets()) {
+            finishSearch();
+        }
+    }
+
+    // safe from any thread, the server list itself is only touched by flushServers
+    private void addServer(String ip, MServerInfo info) {
+        if ((info != null && !filterPass(info)) || !knownAddresses.add(ip)) return;
+        int number;
         synchronized (serverFinderLock) {
-            if (checked == targetChecked) {
-                state = ServerFinderState.DONE;
-            }
+            working.increment();
+            number = working.intValue();
         }
+        pendingServers.add(new ServerInfo("Server discovery #" + number, ip, ServerInfo.ServerType.OTHER));
     }
 
     @Override
     public void onServerFailed(ServerPinger pinger) {
         if (state == ServerFinderState.CANCELLED || pinger == null || pinger.getSearchNumber() != searchNumber)
             return;
-        synchronized (serverFinderLock) {
-            checked++;
-            numActiveThreads--;
-        }
+        ScanDatabase.get().recordFailure(toAddress(pinger.getServerIP()));
+        checked.increment();
+        numActiveThreads--;
+        metrics.onFailure(pinger.getFailure());
         while (numActiveThreads < maxThreads && pingNewIP()) ;
-        synchronized (serverFinderLock) {
-            if (checked == targetChecked) {
-                state = ServerFinderState.DONE;
+        if (checked.sum() + skipped.sum() == getTotalTargets()) {
+            finishSearch();
+        }
+    }
+
+    private class ScanListener implements ServerScanner.Listener {
+        private final int search;
+
+        private ScanListener(int search) {
+            this.search = search;
+        }
+
+        private boolean isCurrent() {
+            return state != ServerFinderState.CANCELLED && search == searchNumber;
+        }
+
+        @Override
+        public void onResponse(InetSocketAddress address, MServerInfo info) {
+            ScanDatabase.get().recordResponse(address, info);
+            if (!isCurrent()) return;
+            checked.increment();
+            addServer(info.address, info);
+        }
+
+        @Override
+        public void onFailure(InetSocketAddress address) {
+            ScanDatabase.get().recordFailure(address);
+            if (!isCurrent()) return;
+            checked.increment();
+        }
+
+        @Override
+        public void onTargetsAdded(int amount) {
+            if (isCurrent()) incrementTargetChecked(amount);
+        }
+
+        @Override
+        public void onFinished() {
+            if (isCurrent()) finishSearch();
+        }
+    }
+
+    // leaves out hosts the scan database saw dead within its ttl, they still count as checked
+    private class LiveTargets implements Iterator<InetSocketAddress> {
+        private final Iterator<InetSocketAddress> source;
+        private final boolean skipDead;
+        private InetSocketAddress next;
+
+        private LiveTargets(Iterator<InetSocketAddress> source, boolean skipDead) {
+            this.source = source;
+            this.skipDead = skipDead;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && source.hasNext()) {
+                InetSocketAddress target = source.next();
+                if (!skipDead || ScanDatabase.get().shouldProbe(target, ScanDatabase.DEAD_TTL)) next = target;
+                else skipped.increment();
             }
+            return next != null;
+        }
+
+        @Override
+        public InetSocketAddress next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            InetSocketAddress target = next;
+            next = null;
+            return target;
+        }
+    }
+
+    public enum Engine {
+        EventLoop("Event loop"),
+        Threads("Threads");
+
+        private final String name;
+
+        Engine(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
         }
     }
 
@@ -277,6 +549,7 @@ public class ServerFinderScreen extends WindowScreen implements IServerFinderDon
         SEARCHING("Searching..."),
         RESOLVING("Resolving..."),
         UNKNOWN_HOST("Unknown Host!"),
+        INVALID_TARGETS("Invalid targets!"),
         CANCELLED("Cancelled!"),
         DONE("Done!"),
         ERROR("An error occurred!");
@@ -4,13 +4,14 @@ import anticope.rejects.MeteorRejectsAddon;
 import anticope.rejects.mixin.MultiplayerScreenAccessor;
 import anticope.rejects.mixin.ServerListAccessor;
 import anticope.rejects.utils.server.IPAddress;
+import anticope.rejects.utils.server.PackedIPSet;
 import meteordevelopment.meteorclient.gui.GuiTheme;
 import meteordevelopment.meteorclient.gui.WindowScreen;
 import meteordevelopment.meteorclient.gui.widgets.containers.WContainer;
 import meteordevelopment.meteorclient.gui.widgets.containers.WHorizontalList;
 import meteordevelopment.meteorclient.gui.widgets.pressable.WButton;
 import meteordevelopment.meteorclient.utils.misc.IGetter;
-import net.minecraft.client.MinecraftClient;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.screen.multiplayer.MultiplayerScreen;
 import net.minecraft.client.network.ServerInfo;
@@ -22,14 +23,12 @@ import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryUtil;
 import org.lwjgl.util.tinyfd.TinyFileDialogs;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 public class ServerManagerScreen extends WindowScreen {
 
@@ -66,72 +65,74 @@ public class ServerManagerScreen extends WindowScreen {
             if (!targetPath.endsWith(".txt")) targetPath += ".txt";
             Path filePath = Path.of(targetPath);
 
-            int newIPs = 0;
-
-            Set<IPAddress> hashedIPs = new HashSet<>();
-            if (Files.exists(filePath)) {
-                try {
-                    List<String> ips = Files.readAllLines(filePath);
-                    for (String ip : ips) {
-                        IPAddress parsedIP = IPAddress.fromText(ip);
-                        if (parsedIP != null)
-                            hashedIPs.add(parsedIP);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-
             ServerList servers = multiplayerScreen.getServerList();
-            for (int i = 0; i < servers.size(); i++) {
-                ServerInfo info = servers.get(i);
-                IPAddress addr = IPAddress.fromText(info.address);
-                if (addr != null && hashedIPs.add(addr))
-                    newIPs++;
-            }
+            long[] listed = new long[servers.size()];
+            for (int i = 0; i < listed.length; i++) listed[i] = IPAddress.pack(servers.get(i).address);
 
-            StringBuilder fileOutput = new StringBuilder();
-            for (IPAddress ip : hashedIPs) {
-                String stringIP = ip.toString();
-                if (stringIP != null)
-                    fileOutput.append(stringIP).append("\n");
-            }
+            // only the file's addresses are kept, as packed longs, and new ones are appended to it
+            MeteorExecutor.execute(tryHandle(() -> {
+                PackedIPSet saved = new PackedIPSet();
+                if (Files.exists(filePath)) IPAddress.readPacked(filePath, saved::add);
 
-            try {
-                Files.writeString(filePath, fileOutput.toString());
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+                LongStream.Builder added = LongStream.builder();
+                for (long packed : listed) {
+                    if (packed >= 0 && saved.add(packed)) added.add(packed);
+                }
+                long[] newAddresses = added.build().toArray();
+                if (newAddresses.length > 0) IPAddress.appendPacked(filePath, newAddresses);
 
-            toast("Success!", newIPs == 1 ? "Saved %s new IP" : "Saved %s new IPs", newIPs);
-        }, e -> {
-            MeteorRejectsAddon.LOG.error("Could not save IPs");
-            toast("Something went wrong", "The IPs could not be saved, look at the log for details");
-        });
+                int newIPs = newAddresses.length;
+                client.execute(() -> toast("Success!", newIPs == 1 ? "Saved %s new IP" : "Saved %s new IPs", newIPs));
+            }, this::onSaveFailed));
+        }, this::onSaveFailed);
         l.add(theme.button("Load IPs")).expandX().widget().action = tryHandle(() -> {
             String targetPath = TinyFileDialogs.tinyfd_openFileDialog("Load IPs", null, saveFileFilters, "", false);
             if (targetPath == null) return;
             Path filePath = Path.of(targetPath);
             if (!Files.exists(filePath)) return;
 
-            List<ServerInfo> servers = ((ServerListAccessor) multiplayerScreen.getServerList()).getServers();
-            Set<String> presentAddresses = new HashSet<>();
-            int newIPs = 0;
-            for (ServerInfo server : servers) presentAddresses.add(server.address);
-            for (String addr : MinecraftClient.getInstance().keyboard.getClipboard().split("[\r\n]+")) {
-                if (presentAddresses.add(addr = addr.split(" ")[0])) {
-                    servers.add(new ServerInfo("Server discovery #" + presentAddresses.size(), addr, ServerInfo.ServerType.OTHER));
-                    newIPs++;
-                }
+            // parse off the client thread, only adding the entries has to happen on it
+            MeteorExecutor.execute(tryHandle(() -> {
+                PackedIPSet seen = new PackedIPSet();
+                LongStream.Builder loaded = LongStream.builder();
+                IPAddress.readPacked(filePath, packed -> {
+                    if (seen.add(packed)) loaded.add(packed);
+                });
+                long[] addresses = loaded.build().toArray();
+                client.execute(() -> addLoaded(addresses));
+            }, this::onLoadFailed));
+        }, this::onLoadFailed);
+    }
+
+    private void addLoaded(long[] loaded) {
+        List<ServerInfo> servers = ((ServerListAccessor) multiplayerScreen.getServerList()).getServers();
+        PackedIPSet present = new PackedIPSet(servers.size());
+        for (ServerInfo server : servers) {
+            long packed = IPAddress.pack(server.address);
+            if (packed >= 0) present.add(packed);
+        }
+
+        int newIPs = 0;
+        for (long packed : loaded) {
+            if (present.add(packed)) {
+                servers.add(new ServerInfo("Server discovery #" + servers.size(), IPAddress.toString(packed), ServerInfo.ServerType.OTHER));
+                newIPs++;
             }
-            multiplayerScreen.getServerList().saveFile();
-            ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setSelected(null);
-            ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setServers(multiplayerScreen.getServerList());
-            toast("Success!", newIPs == 1 ? "Loaded %s new IP" : "Loaded %s new IPs", newIPs);
-        }, e -> {
-            MeteorRejectsAddon.LOG.error("Could not load IPs");
-            toast("Something went wrong", "The IPs could not be loaded, look at the log for details");
-        });
+        }
+        multiplayerScreen.getServerList().saveFile();
+        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setSelected(null);
+        ((MultiplayerScreenAccessor) multiplayerScreen).getServerListWidget().setServers(multiplayerScreen.getServerList());
+        toast("Success!", newIPs == 1 ? "Loaded %s new IP" : "Loaded %s new IPs", newIPs);
+    }
+
+    private void onSaveFailed(Throwable e) {
+        MeteorRejectsAddon.LOG.error("Could not save IPs", e);
+        client.execute(() -> toast("Something went wrong", "The IPs could not be saved, look at the log for details"));
+    }
+
+    private void onLoadFailed(Throwable e) {
+        MeteorRejectsAddon.LOG.error("Could not load IPs", e);
+        client.execute(() -> toast("Something went wrong", "The IPs could not be loaded, look at the log for details"));
     }
 
     private void toast(String titleKey, String descriptionKey, Object... params) {
@@ -1,9 +1,14 @@
 package anticope.rejects.mixin;
 
+import anticope.rejects.events.ChunkUnloadEvent;
 import anticope.rejects.events.PlayerRespawnEvent;
+import anticope.rejects.utils.PlayerPresence;
 import meteordevelopment.meteorclient.MeteorClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.PlayerListS2CPacket;
+import net.minecraft.network.packet.s2c.play.PlayerRemoveS2CPacket;
 import net.minecraft.network.packet.s2c.play.PlayerRespawnS2CPacket;
+import net.minecraft.network.packet.s2c.play.UnloadChunkS2CPacket;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
@@ -17,4 +22,20 @@ public class ClientPlayNetworkHandlerMixin {
     public void onPlayerRespawn(PlayerRespawnS2CPacket packet, CallbackInfo ci) {
         MeteorClient.EVENT_BUS.post(PlayerRespawnEvent.get());
     }
+
+    @Inject(method = "onUnloadChunk", at = @At("TAIL"))
+    public void onUnloadChunk(UnloadChunkS2CPacket packet, CallbackInfo ci) {
+        MeteorClient.EVENT_BUS.post(ChunkUnloadEvent.get(packet.pos()));
+    }
+
+    //tail is only reached on the client thread, after the entries were applied
+    @Inject(method = "onPlayerList", at = @At("TAIL"))
+    public void onPlayerList(PlayerListS2CPacket packet, CallbackInfo ci) {
+        PlayerPresence.onPlayerList(packet);
+    }
+
+    @Inject(method = "onPlayerRemove", at = @At("TAIL"))
+    public void onPlayerRemove(PlayerRemoveS2CPacket packet, CallbackInfo ci) {
+        PlayerPresence.onPlayerRemove(packet);
+    }
 }
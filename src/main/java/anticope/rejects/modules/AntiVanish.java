@@ -1,6 +1,7 @@
 package anticope.rejects.modules;
 
 import anticope.rejects.MeteorRejectsAddon;
+import anticope.rejects.events.PlayerLeftEvent;
 import com.mojang.brigadier.suggestion.Suggestion;
 import meteordevelopment.meteorclient.events.game.ReceiveMessageEvent;
 import meteordevelopment.meteorclient.events.packets.PacketEvent;
@@ -16,7 +17,6 @@ import net.minecraft.network.packet.s2c.play.CommandSuggestionsS2CPacket;
 
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class AntiVanish extends Module {
     private final SettingGroup sgGeneral = settings.getDefaultGroup();
@@ -44,7 +44,8 @@ public class AntiVanish extends Module {
             .build()
     );
 
-    private Map<UUID, String> playerCache = new HashMap<>();
+    // players who left without a leave message yet, and the tick they left on
+    private final Map<String, Integer> pendingLeaves = new HashMap<>();
     private final List<String> messageCache = new ArrayList<>();
 
     private final Random random = new Random();
@@ -52,6 +53,7 @@ public class AntiVanish extends Module {
     private List<String> completionPlayerCache = new ArrayList<>();
 
     private int timer = 0;
+    private int ticks = 0;
 
     public AntiVanish() {
         super(MeteorRejectsAddon.CATEGORY, "anti-vanish", "Notifies user when a admin uses /vanish");
@@ -60,8 +62,10 @@ public class AntiVanish extends Module {
     @Override
     public void onActivate() {
         timer = 0;
+        ticks = 0;
         completionIDs.clear();
         messageCache.clear();
+        pendingLeaves.clear();
     }
 
     @Override
@@ -112,34 +116,40 @@ public class AntiVanish extends Module {
 
     @EventHandler
     private void onReceiveMessage(ReceiveMessageEvent event) {
-        messageCache.add(event.getMessage().getString());
+        String message = event.getMessage().getString();
+        messageCache.add(message);
+        if (!pendingLeaves.isEmpty()) pendingLeaves.keySet().removeIf(message::contains);
+    }
+
+    @EventHandler
+    private void onPlayerLeft(PlayerLeftEvent event) {
+        if (mode.get() != Mode.LeaveMessage) return;
+        String name = event.player.name();
+        if (name.contains(" ")) return;
+        if (name.length() < 3 || name.length() > 16) return;
+        if (messageCache.stream().anyMatch(s -> s.contains(name))) return;
+        pendingLeaves.put(name, ticks);
     }
 
     @EventHandler
     private void onTick(TickEvent.Post event) {
+        ticks++;
+        // the leave message gets one interval to show up
+        if (!pendingLeaves.isEmpty()) {
+            pendingLeaves.entrySet().removeIf(leave -> {
+                if (ticks - leave.getValue() < interval.get()) return false;
+                warning(leave.getKey() + " has gone into vanish.");
+                return true;
+            });
+        }
+
         timer++;
         if (timer < interval.get()) return;
 
-        switch (mode.get()) {
-            case LeaveMessage -> {
-                Map<UUID, String> oldPlayers = Map.copyOf(playerCache);
-                playerCache = mc.getNetworkHandler().getPlayerList().stream().collect(Collectors.toMap(e -> e.getProfile().getId(), e -> e.getProfile().getName()));
-
-                for (UUID uuid : oldPlayers.keySet()) {
-                    if (playerCache.containsKey(uuid)) continue;
-                    String name = oldPlayers.get(uuid);
-                    if (name.contains(" ")) continue;
-                    if (name.length() < 3 || name.length() > 16) continue;
-                    if (messageCache.stream().noneMatch(s -> s.contains(name))) {
-                        warning(name + " has gone into vanish.");
-                    }
-                }
-            }
-            case RealJoinMessage -> {
-                int id = random.nextInt(200);
-                completionIDs.add(id);
-                mc.getNetworkHandler().sendPacket(new RequestCommandCompletionsC2SPacket(id, command.get() + " "));
-            }
+        if (mode.get() == Mode.RealJoinMessage) {
+            int id = random.nextInt(200);
+            completionIDs.add(id);
+            mc.getNetworkHandler().sendPacket(new RequestCommandCompletionsC2SPacket(id, command.get() + " "));
         }
         timer = 0;
         messageCache.clear();
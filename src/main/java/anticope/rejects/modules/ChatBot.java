@@ -1,8 +1,12 @@
 package anticope.rejects.modules;
 
+import anticope.rejects.events.PlayerJoinedEvent;
+import anticope.rejects.utils.PlayerPresence;
+import anticope.rejects.utils.chat.ChatLineClassifier;
+import anticope.rejects.utils.chat.CommandTrie;
+import anticope.rejects.utils.chat.LeakGuard;
 import meteordevelopment.meteorclient.MeteorClient;
 import meteordevelopment.meteorclient.events.game.ReceiveMessageEvent;
-import meteordevelopment.meteorclient.events.world.TickEvent;
 import meteordevelopment.meteorclient.settings.BoolSetting;
 import meteordevelopment.meteorclient.settings.Setting;
 import meteordevelopment.meteorclient.settings.SettingGroup;
@@ -14,26 +18,29 @@ import meteordevelopment.orbit.EventHandler;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
-import net.minecraft.client.network.PlayerListEntry;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.MatchResult;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ChatBotPlus
@@ -46,7 +53,7 @@ import java.util.regex.Pattern;
  *
  * Notes:
  * - Never prints the bot's own coordinates, yaw, or pitch.
- * - Delivery detection uses the tablist (reliable across many servers).
+ * - Delivery detection uses tablist joins (reliable across many servers).
  */
 public class ChatBotPlus extends Module {
     // Category (shows up in Meteor GUI). If your addon already defines categories, reuse that instead.
@@ -55,6 +62,8 @@ public class ChatBotPlus extends Module {
     // JSON store
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final Type STORE_TYPE = new TypeToken<Map<String, List<OfflineMsg>>>() {}.getType();
+    // journal records since the last snapshot before it gets compacted
+    private static final int COMPACT_AFTER = 500;
 
     // ---------------- Settings ----------------
     private final SettingGroup gGeneral = settings.getDefaultGroup();
@@ -117,40 +126,24 @@ public class ChatBotPlus extends Module {
 
     // ---------------- Storage ----------------
     private Path storePath;
+    private Journal journal;
     private Map<String, List<OfflineMsg>> store = new HashMap<>(); // key = lowercased target username
-    private final Set<UUID> seenTablist = new HashSet<>();
-    private int tickCounter = 0;
 
     // ---------------- Patterns / Guards ----------------
-    // Public chat formats like: "<Name> message:" or "Name: message"
-    private static final Pattern CHAT_NAME_MSG = Pattern.compile(
-        "^\\s*[<\\[]?(?<name>[A-Za-z0-9_]{3,16})[>\\]]?\\s*[:»]\\s*(?<msg>.+)$"
-    );
-
-    // Private-message (DM) formats (Essentials-like, vanilla-like, bracketed PMs)
-    private static final Pattern DM_ESS_FROM = Pattern.compile(
-        "(?i)^\\s*(?:from\\s+)?(?<name>[A-Za-z0-9_]{3,16})\\s*->\\s*(?:me|you)\\s*:\\s*(?<msg>.+)$"
-    );
-    private static final Pattern DM_VANILLA_FROM = Pattern.compile(
-        "(?i)^\\s*(?<name>[A-Za-z0-9_]{3,16})\\s+whispers\\s+to\\s+you:\\s*(?<msg>.+)$"
-    );
-    private static final Pattern DM_BRACKET = Pattern.compile(
-        "^\\s*\\[\\s*PM\\s*]\\s*(?<name>[A-Za-z0-9_]{3,16})\\s*[:»]\\s*(?<msg>.+)$"
-    );
-
-    // Raw coord-ish patterns
-    private static final Pattern RAW_XYZ_TRIPLE = Pattern.compile("\\b-?\\d{1,7}\\b(?:[ ,]+-?\\d{1,7}\\b){2}");
-    private static final Pattern LBL_XYZ = Pattern.compile("(?i)\\b(X|Y|Z|Yaw|Pitch)\\s*[:=]\\s*-?\\d+(?:\\.\\d+)?");
-
-    // Starscript-like braces and sensitive tokens (coords/camera/server performance)
-    private static final Pattern CURLY = Pattern.compile("\\{[^}]*}");
-    private static final Pattern DANGEROUS_TOKENS = Pattern.compile(
-        "(?i)\\{[^}]*\\b(?:" +
-            "player\\.(?:x|y|z|pos(?:ition)?|yaw|pitch|rotation|facing)" +
-            "|camera\\.(?:yaw|pitch)" +
-            "|server\\.(?:tps|mspt)" +
-        ")\\b[^}]*}"
-    );
+    // Public chat ("<Name>: message", "Name: message") and DM formats (Essentials-like, vanilla-like,
+    // bracketed PMs) are told apart by ChatLineClassifier in a single pass.
+    private enum Cmd { HELP, PING, INFO, LEAVE, INBOX }
+
+    private static final CommandTrie<Cmd> COMMANDS = new CommandTrie<Cmd>()
+        .add("help", Cmd.HELP)
+        .add("ping", Cmd.PING)
+        .add("info", Cmd.INFO)
+        .add("leave", Cmd.LEAVE)
+        .add("inbox", Cmd.INBOX);
+
+    // Starscript braces, sensitive tokens (coords/camera/server performance) and coord-ish text
+    // are masked by LeakGuard in one pass, with replies that repeat served from its cache.
+    private final LeakGuard guard = new LeakGuard();
 
     // ---------------- Lifecycle ----------------
     public ChatBotPlus() {
@@ -160,54 +153,21 @@ public class ChatBotPlus extends Module {
     @Override
     public void onActivate() {
         storePath = getDataPath("offline_messages.json");
+        journal = new Journal(getDataPath("offline_messages.snapshot.json"), getDataPath("offline_messages.journal"));
         loadStore();
-        snapshotTablist();
-        tickCounter = 0;
     }
 
     @Override
     public void onDeactivate() {
-        saveStore();
-        seenTablist.clear();
+        journal.close(store);
+        journal = null;
     }
 
     // ---------------- Events ----------------
     @EventHandler
-    private void onTick(TickEvent.Post e) {
+    private void onPlayerJoined(PlayerJoinedEvent e) {
         if (!enableOffline.get()) return;
-        if (++tickCounter % 20 != 0) return; // ~1s
-
-        ClientPlayNetworkHandler nh = nh();
-        if (nh == null) return;
-
-        for (PlayerListEntry ple : nh.getPlayerList()) {
-            if (ple == null) continue;
-            UUID id = ple.getProfile().getId();
-            if (id == null) continue;
-            if (seenTablist.add(id)) {
-                String name = ple.getProfile().getName();
-                if (name != null) tryDeliverTo(name);
-            }
-        }
-    }
-
-    private static class ParsedChat {
-        String sender, msg;
-        boolean isPrivate;
-        ParsedChat(String s, String m, boolean p) { sender = s; msg = m; isPrivate = p; }
-    }
-
-    private ParsedChat parseIncoming(String raw) {
-        Matcher m;
-        if ((m = CHAT_NAME_MSG.matcher(raw)).find())
-            return new ParsedChat(m.group("name"), m.group("msg").trim(), false);
-        if ((m = DM_ESS_FROM.matcher(raw)).find())
-            return new ParsedChat(m.group("name"), m.group("msg").trim(), true);
-        if ((m = DM_VANILLA_FROM.matcher(raw)).find())
-            return new ParsedChat(m.group("name"), m.group("msg").trim(), true);
-        if ((m = DM_BRACKET.matcher(raw)).find())
-            return new ParsedChat(m.group("name"), m.group("msg").trim(), true);
-        return null;
+        tryDeliverTo(e.player.name());
     }
 
     @EventHandler
@@ -215,41 +175,45 @@ public class ChatBotPlus extends Module {
         if (mc() == null || e.getMessage() == null) return;
 
         String raw = e.getMessage().getString();
-        ParsedChat pc = parseIncoming(raw);
+        ChatLineClassifier.Line pc = ChatLineClassifier.classify(raw);
         if (pc == null) return;
 
-        String sender = pc.sender;
-        String msg = pc.msg;
-        boolean cameFromDM = pc.isPrivate;
+        String sender = pc.sender();
+        String msg = pc.body();
+        boolean cameFromDM = pc.isPrivate();
 
         // Commands start with prefix
         if (!msg.startsWith(prefix.get())) return;
         String cmdline = msg.substring(prefix.get().length()).trim();
         if (cmdline.isEmpty()) return;
 
-        // --- Info / Help / Ping ---
-        if (enableInfo.get()) {
-            if (cmdline.equalsIgnoreCase("help")) {
-                replySmart(sender, safeOut(
+        CommandTrie.Match<Cmd> match = COMMANDS.match(cmdline);
+        if (match == null) return;
+        // only leave takes arguments, the others have to be the whole line
+        if ((match.value() == Cmd.LEAVE) == match.args().isEmpty()) return;
+
+        switch (match.value()) {
+            // --- Info / Help / Ping ---
+            case HELP -> {
+                if (!enableInfo.get()) return;
+                replySmart(sender,
                     "Commands: " + prefix.get() + "help, " + prefix.get() + "ping, " +
                     prefix.get() + "info, " + prefix.get() + "leave <player> <message>, " +
-                    prefix.get() + "inbox"), cameFromDM);
-                return;
+                    prefix.get() + "inbox", cameFromDM);
             }
-            if (cmdline.equalsIgnoreCase("ping")) {
+            case PING -> {
+                if (!enableInfo.get()) return;
                 Integer p = getLatencyFor(sender);
                 replySmart(sender, p == null ? "Ping: N/A (not visible in tablist)" : ("Your ping: " + p + " ms"), cameFromDM);
-                return;
             }
-            if (cmdline.equalsIgnoreCase("info")) {
-                replySmart(sender, safeOut(buildInfoLine()), cameFromDM);
-                return;
+            case INFO -> {
+                if (!enableInfo.get()) return;
+                replySmart(sender, buildInfoLine(), cameFromDM);
             }
-        }
 
-        // --- Offline messenger ---
-        if (enableOffline.get()) {
-            if (cmdline.toLowerCase(Locale.ROOT).startsWith("leave ")) {
+            // --- Offline messenger ---
+            case LEAVE -> {
+                if (!enableOffline.get()) return;
                 String[] parts = cmdline.split("\\s+", 3);
                 if (parts.length < 3) {
                     replySmart(sender, "Usage: " + prefix.get() + "leave <player> <message>", cameFromDM);
@@ -262,10 +226,9 @@ public class ChatBotPlus extends Module {
                 replySmart(sender, "Saved a note for " + target + ". It will be delivered when they come online.", cameFromDM);
 
                 if (isOnline(target)) tryDeliverTo(target);
-                return;
             }
-
-            if (cmdline.equalsIgnoreCase("inbox")) {
+            case INBOX -> {
+                if (!enableOffline.get()) return;
                 List<OfflineMsg> inbox = store.getOrDefault(sender.toLowerCase(Locale.ROOT), Collections.emptyList());
                 if (inbox.isEmpty()) {
                     replySmart(sender, "You have no offline messages.", cameFromDM);
@@ -273,14 +236,13 @@ public class ChatBotPlus extends Module {
                     replySmart(sender, "You have " + inbox.size() + " offline message(s). They'll arrive shortly.", cameFromDM);
                     tryDeliverTo(sender);
                 }
-                return;
             }
         }
     }
 
     // ---------------- Core ----------------
+    // sendPublic/sendPrivate sanitize what actually goes out, once
     private void replySmart(String to, String text, boolean cameFromDM) {
-        text = safeOut(text);
         if (cameFromDM || !respondPublic.get()) {
             if (!sendPrivate(to, text)) sendPublic(to + " " + text);
         } else {
@@ -293,12 +255,12 @@ public class ChatBotPlus extends Module {
         List<OfflineMsg> queue = store.get(key);
         if (queue == null || queue.isEmpty()) return;
 
+        int delivered = 0;
         Iterator<OfflineMsg> it = queue.iterator();
         while (it.hasNext()) {
             OfflineMsg om = it.next();
 
             String payload = "[OFFLINE] From " + om.from + " @ " + fmtTime(om.ts) + ": " + sanitizeInbound(om.body);
-            payload = safeOut(payload);
 
             if (!sendPrivate(exactName, payload)) {
                 sendPublic(exactName + " " + payload);
@@ -310,25 +272,21 @@ public class ChatBotPlus extends Module {
             }
 
             it.remove();
+            delivered++;
         }
         if (queue.isEmpty()) store.remove(key);
-        saveStore();
+        journal.deliver(key, delivered, store);
     }
 
     private boolean isOnline(String name) {
-        ClientPlayNetworkHandler nh = nh();
-        if (nh == null) return false;
-        for (PlayerListEntry ple : nh.getPlayerList()) {
-            if (ple != null && name.equalsIgnoreCase(ple.getProfile().getName())) return true;
-        }
-        return false;
+        return PlayerPresence.isOnline(name);
     }
 
     private void enqueueMessage(String target, String from, String body) {
         String k = target.toLowerCase(Locale.ROOT);
-        store.computeIfAbsent(k, __ -> new ArrayList<>())
-            .add(new OfflineMsg(from, body, System.currentTimeMillis()));
-        saveStore();
+        OfflineMsg om = new OfflineMsg(from, body, System.currentTimeMillis());
+        store.computeIfAbsent(k, __ -> new ArrayList<>()).add(om);
+        journal.enqueue(k, om, store);
     }
 
     // ---------------- Replies ----------------
@@ -364,96 +322,221 @@ public class ChatBotPlus extends Module {
         }
 
     private Integer getLatencyFor(String name) {
-        ClientPlayNetworkHandler nh = nh();
-        if (nh == null) return null;
-        for (PlayerListEntry ple : nh.getPlayerList()) {
-            if (ple != null && name.equalsIgnoreCase(ple.getProfile().getName())) {
-                return ple.getLatency();
-            }
-        }
-        return null;
+        PlayerPresence.Player player = PlayerPresence.get(name);
+        return player != null ? player.latency() : null;
     }
 
     // ---------------- LeakGuard / Sanitizers ----------------
     /** Sanitize inbound (stored) text so we don’t evaluate Starscript when later echoing. */
     private String sanitizeInbound(String s) {
         if (!leakGuard.get() || s == null) return s;
-        String out = s;
-        if (stripStarscript.get()) {
-            out = CURLY.matcher(out).replaceAll((MatchResult m) -> toFullwidth(m.group()));
-        }
-        return out;
+        return stripStarscript.get() ? LeakGuard.fullwidthBraces(s) : s;
     }
 
     /** Sanitize any outbound text before sending to chat. */
     private String safeOut(String s) {
         if (!leakGuard.get() || s == null) return s;
+        // 1) Block every {...} if one holds a dangerous Starscript token
+        // 2) Convert remaining {...} to fullwidth braces (prevents evaluation in overlays)
+        // 3) Mask coord-like patterns
+        return guard.configure(blockDangerTokens.get(), stripStarscript.get(), blockRawXYZ.get()).sanitize(s);
+    }
 
-        String out = s;
+    // ---------------- Store ----------------
+    private void loadStore() {
+        try {
+            store = journal.load(storePath);
+        } catch (Exception ex) {
+            store = new HashMap<>();
+            ChatUtils.error("ChatBotPlus: failed to load store: " + ex.getMessage());
+        }
+    }
 
-        // 1) Strip dangerous Starscript tokens entirely
-        if (blockDangerTokens.get() && DANGEROUS_TOKENS.matcher(out).find()) {
-            out = CURLY.matcher(out).replaceAll("[blocked]");
+    /**
+     * Offline message store as a snapshot plus an append-only journal of enqueue/deliver records.
+     * Records are written by a background thread, so queuing a note never touches the disk on the
+     * client thread. Every {@link #COMPACT_AFTER} records the store is folded into a new snapshot.
+     * <p>
+     * Each record has a sequence number and the snapshot remembers the last one it contains, so a
+     * crash between writing the snapshot and truncating the journal can't apply records twice.
+     */
+    private static class Journal {
+        private static final Gson LINE_GSON = new Gson();
+
+        private final Path snapshotPath;
+        private final Path journalPath;
+        private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ChatBotPlus Journal");
+            t.setDaemon(true);
+            return t;
+        });
+        private BufferedWriter out; // only touched from the writer thread
+        private long seq;
+        private int sinceSnapshot;
+
+        Journal(Path snapshotPath, Path journalPath) {
+            this.snapshotPath = snapshotPath;
+            this.journalPath = journalPath;
         }
 
-        // 2) Convert remaining {...} to fullwidth braces (prevents evaluation in overlays)
-        if (stripStarscript.get()) {
-            out = CURLY.matcher(out).replaceAll((MatchResult m) -> toFullwidth(m.group()));
+        /** Snapshot (or the old single-file store on first run) plus every record after it. */
+        Map<String, List<OfflineMsg>> load(Path legacyPath) throws IOException {
+            Map<String, List<OfflineMsg>> data = null;
+            if (Files.exists(snapshotPath)) {
+                try (Reader r = Files.newBufferedReader(snapshotPath, StandardCharsets.UTF_8)) {
+                    Snapshot snapshot = GSON.fromJson(r, Snapshot.class);
+                    if (snapshot != null) {
+                        data = snapshot.store;
+                        seq = snapshot.seq;
+                    }
+                }
+            } else if (Files.exists(legacyPath)) {
+                try (Reader r = Files.newBufferedReader(legacyPath, StandardCharsets.UTF_8)) {
+                    data = GSON.fromJson(r, STORE_TYPE);
+                }
+            }
+            if (data == null) data = new HashMap<>();
+
+            if (Files.exists(journalPath)) {
+                byte[] bytes = Files.readAllBytes(journalPath);
+                int good = 0; // end of the last complete record
+                for (int start = 0, end; (end = indexOf(bytes, (byte) '\n', start)) >= 0; start = end + 1) {
+                    Record rec;
+                    try {
+                        rec = LINE_GSON.fromJson(new String(bytes, start, end - start, StandardCharsets.UTF_8).trim(), Record.class);
+                    } catch (RuntimeException torn) {
+                        break; // half-written line from a crash
+                    }
+                    good = end + 1;
+                    if (rec == null || rec.seq <= seq) continue;
+                    seq = rec.seq;
+                    sinceSnapshot++;
+                    apply(data, rec);
+                }
+                // cut off a torn tail, new records appended to it would be unreadable too
+                if (good < bytes.length) {
+                    try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                        channel.truncate(good);
+                    }
+                }
+            }
+            return data;
         }
 
-        // 3) Mask coord-like patterns
-        if (blockRawXYZ.get()) {
-            if (RAW_XYZ_TRIPLE.matcher(out).find() || LBL_XYZ.matcher(out).find()) {
-                out = out.replaceAll(RAW_XYZ_TRIPLE.pattern(), "[coords blocked]");
-                out = out.replaceAll(LBL_XYZ.pattern(), "[coords blocked]");
+        private static int indexOf(byte[] bytes, byte b, int from) {
+            for (int i = from; i < bytes.length; i++) {
+                if (bytes[i] == b) return i;
             }
+            return -1;
         }
 
-        return out;
-    }
+        private static void apply(Map<String, List<OfflineMsg>> data, Record rec) {
+            if ("enqueue".equals(rec.op)) {
+                data.computeIfAbsent(rec.to, __ -> new ArrayList<>()).add(new OfflineMsg(rec.from, rec.body, rec.ts));
+            } else if ("deliver".equals(rec.op)) {
+                List<OfflineMsg> queue = data.get(rec.to);
+                if (queue == null) return;
+                queue.subList(0, Math.min(rec.count, queue.size())).clear();
+                if (queue.isEmpty()) data.remove(rec.to);
+            }
+        }
 
-    private static String toFullwidth(String braces) {
-        // Replace { and } with fullwidth variants; keep inner text intact.
-        String inner = braces.length() >= 2 ? braces.substring(1, braces.length() - 1) : "";
-        return "｛" + inner + "｝";
-    }
+        void enqueue(String to, OfflineMsg om, Map<String, List<OfflineMsg>> store) {
+            Record rec = new Record();
+            rec.op = "enqueue";
+            rec.to = to;
+            rec.from = om.from;
+            rec.body = om.body;
+            rec.ts = om.ts;
+            append(rec, store);
+        }
 
-    // ---------------- Store ----------------
-    private void loadStore() {
-        try {
-            if (Files.exists(storePath)) {
-                try (Reader r = Files.newBufferedReader(storePath, StandardCharsets.UTF_8)) {
-                    Map<String, List<OfflineMsg>> data = GSON.fromJson(r, STORE_TYPE);
-                    if (data != null) store = data;
+        /** The first {@code count} queued notes for {@code to} were delivered. */
+        void deliver(String to, int count, Map<String, List<OfflineMsg>> store) {
+            if (count == 0) return;
+            Record rec = new Record();
+            rec.op = "deliver";
+            rec.to = to;
+            rec.count = count;
+            append(rec, store);
+        }
+
+        private void append(Record rec, Map<String, List<OfflineMsg>> store) {
+            rec.seq = ++seq;
+            String line = LINE_GSON.toJson(rec);
+            writer.execute(() -> {
+                try {
+                    if (out == null) {
+                        Files.createDirectories(journalPath.getParent());
+                        out = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    }
+                    out.write(line);
+                    out.newLine();
+                    out.flush();
+                } catch (IOException ex) {
+                    MinecraftClient.getInstance().execute(() -> ChatUtils.error("ChatBotPlus: failed to write journal: " + ex.getMessage()));
                 }
-            }
-        } catch (Exception ex) {
-            ChatUtils.error("ChatBotPlus: failed to load store: " + ex.getMessage());
+            });
+            if (++sinceSnapshot >= COMPACT_AFTER) compact(store);
         }
-    }
 
-    private void saveStore() {
-        try {
-            Files.createDirectories(storePath.getParent());
-            Path tmp = storePath.resolveSibling(storePath.getFileName() + ".tmp");
-            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
-                GSON.toJson(store, STORE_TYPE, w);
-            }
-            Files.move(tmp, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } catch (Exception ex) {
-            ChatUtils.error("ChatBotPlus: failed to save store: " + ex.getMessage());
+        /** Copies the store on the calling thread, the writer does the rest. */
+        private void compact(Map<String, List<OfflineMsg>> store) {
+            sinceSnapshot = 0;
+            Snapshot snapshot = new Snapshot();
+            snapshot.seq = seq;
+            snapshot.store = new HashMap<>();
+            store.forEach((k, v) -> snapshot.store.put(k, new ArrayList<>(v)));
+            writer.execute(() -> {
+                try {
+                    Files.createDirectories(snapshotPath.getParent());
+                    Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+                    try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                        GSON.toJson(snapshot, w);
+                    }
+                    Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    // everything in the journal is in the snapshot now
+                    if (out != null) out.close();
+                    out = null;
+                    Files.deleteIfExists(journalPath);
+                } catch (IOException ex) {
+                    MinecraftClient.getInstance().execute(() -> ChatUtils.error("ChatBotPlus: failed to compact store: " + ex.getMessage()));
+                }
+            });
         }
-    }
 
-    private void snapshotTablist() {
-        seenTablist.clear();
-        ClientPlayNetworkHandler nh = nh();
-        if (nh == null) return;
-        for (PlayerListEntry ple : nh.getPlayerList()) {
-            if (ple != null && ple.getProfile() != null && ple.getProfile().getId() != null) {
-                seenTablist.add(ple.getProfile().getId());
+        /** Writes a final snapshot and waits briefly for the writer to finish. */
+        void close(Map<String, List<OfflineMsg>> store) {
+            if (sinceSnapshot > 0) compact(store);
+            writer.execute(() -> {
+                try {
+                    if (out != null) out.close();
+                } catch (IOException ignored) {
+                }
+                out = null;
+            });
+            writer.shutdown();
+            try {
+                writer.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
             }
         }
+
+        private static class Snapshot {
+            long seq;
+            Map<String, List<OfflineMsg>> store;
+        }
+
+        private static class Record {
+            long seq;
+            String op;
+            String to;
+            String from;
+            String body;
+            long ts;
+            int count;
+        }
     }
 
     private Path getDataPath(String file) {
@@ -6,6 +6,7 @@ import anticope.rejects.events.SeedChangedEvent;
 import anticope.rejects.utils.Ore;
 import anticope.rejects.utils.seeds.Seed;
 import anticope.rejects.utils.seeds.Seeds;
+import anticope.rejects.utils.worldgen.WorldGenContext;
 import baritone.api.BaritoneAPI;
 import meteordevelopment.meteorclient.events.render.Render3DEvent;
 import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
@@ -34,7 +35,7 @@ import java.util.stream.Collectors;
 public class OreSim extends Module {
 
     private final Map<Long, Map<Ore, Set<Vec3d>>> chunkRenderers = new ConcurrentHashMap<>();
-    private Seed worldSeed = null;
+    private WorldGenContext context = null;
     private Map<RegistryKey<Biome>, List<Ore>> oreConfig;
     public List<BlockPos> oreGoals = new ArrayList<>();
 
@@ -176,6 +177,7 @@ public class OreSim extends Module {
     public void onDeactivate() {
         this.chunkRenderers.clear();
         this.oreConfig = null;
+        this.context = null;
     }
 
     @EventHandler
@@ -201,11 +203,11 @@ public class OreSim extends Module {
     private void reload() {
         Seed seed = Seeds.get().getSeed();
         if (seed == null) return;
-        worldSeed = seed;
+        context = WorldGenContext.get(seed, WorldGenContext.toDimension(PlayerUtils.getDimension()));
         oreConfig = Ore.getRegistry(PlayerUtils.getDimension());
 
         chunkRenderers.clear();
-        if (mc.world != null && worldSeed != null) {
+        if (mc.world != null) {
             loadVisibleChunks();
         }
     }
@@ -222,7 +224,7 @@ public class OreSim extends Module {
 
         ClientWorld world = mc.world;
 
-        if (chunkRenderers.containsKey(chunkKey) || world == null) {
+        if (chunkRenderers.containsKey(chunkKey) || world == null || context == null) {
             return;
         }
 
@@ -239,9 +241,9 @@ public class OreSim extends Module {
 
         int chunkX = chunkPos.x << 4;
         int chunkZ = chunkPos.z << 4;
-        ChunkRandom random = new ChunkRandom(ChunkRandom.RandomProvider.XOROSHIRO.create(0));
+        ChunkRandom random = WorldGenContext.chunkRandom();
 
-        long populationSeed = random.setPopulationSeed(worldSeed.seed, chunkX, chunkZ);
+        long populationSeed = random.setPopulationSeed(context.seed, chunkX, chunkZ);
         HashMap<Ore, Set<Vec3d>> h = new HashMap<>();
 
         for (Ore ore : oreSet) {
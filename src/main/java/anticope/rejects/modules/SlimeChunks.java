@@ -0,0 +1,123 @@
+package anticope.rejects.modules;
+
+import anticope.rejects.MeteorRejectsAddon;
+import anticope.rejects.utils.seeds.Seed;
+import anticope.rejects.utils.seeds.Seeds;
+import anticope.rejects.utils.worldgen.SlimeChunkMap;
+import com.seedfinding.mccore.util.pos.CPos;
+import meteordevelopment.meteorclient.events.render.Render3DEvent;
+import meteordevelopment.meteorclient.renderer.ShapeMode;
+import meteordevelopment.meteorclient.settings.*;
+import meteordevelopment.meteorclient.systems.modules.Module;
+import meteordevelopment.meteorclient.utils.player.PlayerUtils;
+import meteordevelopment.meteorclient.utils.render.color.SettingColor;
+import meteordevelopment.meteorclient.utils.world.Dimension;
+import meteordevelopment.orbit.EventHandler;
+
+public class SlimeChunks extends Module {
+    private final SettingGroup sgGeneral = settings.getDefaultGroup();
+    private final SettingGroup sgRender = settings.createGroup("Render");
+
+    private final Setting<Integer> range = sgGeneral.add(new IntSetting.Builder()
+        .name("range")
+        .description("How many chunks around you to show slime chunks in.")
+        .defaultValue(8)
+        .min(1)
+        .sliderMax(32)
+        .build()
+    );
+
+    private final Setting<Boolean> cluster = sgGeneral.add(new BoolSetting.Builder()
+        .name("cluster")
+        .description("Highlights the densest group of slime chunks in range.")
+        .defaultValue(false)
+        .build()
+    );
+
+    private final Setting<Integer> clusterSize = sgGeneral.add(new IntSetting.Builder()
+        .name("cluster-size")
+        .description("Side length in chunks of the area used to find clusters.")
+        .defaultValue(3)
+        .range(2, 8)
+        .visible(cluster::get)
+        .build()
+    );
+
+    private final Setting<Integer> renderHeight = sgRender.add(new IntSetting.Builder()
+        .name("render-height")
+        .description("The height at which slime chunks will be rendered.")
+        .defaultValue(40)
+        .sliderRange(-64, 319)
+        .build()
+    );
+
+    private final Setting<ShapeMode> shapeMode = sgRender.add(new EnumSetting.Builder<ShapeMode>()
+        .name("shape-mode")
+        .description("How the shapes are rendered.")
+        .defaultValue(ShapeMode.Both)
+        .build()
+    );
+
+    private final Setting<SettingColor> sideColor = sgRender.add(new ColorSetting.Builder()
+        .name("side-color")
+        .description("Color of slime chunks.")
+        .defaultValue(new SettingColor(0, 255, 0, 40))
+        .build()
+    );
+
+    private final Setting<SettingColor> lineColor = sgRender.add(new ColorSetting.Builder()
+        .name("line-color")
+        .description("Color of slime chunk outlines.")
+        .defaultValue(new SettingColor(0, 255, 0, 255))
+        .build()
+    );
+
+    private final Setting<SettingColor> clusterColor = sgRender.add(new ColorSetting.Builder()
+        .name("cluster-color")
+        .description("Color of the densest slime chunk cluster.")
+        .defaultValue(new SettingColor(255, 255, 0, 255))
+        .visible(cluster::get)
+        .build()
+    );
+
+    public SlimeChunks() {
+        super(MeteorRejectsAddon.CATEGORY, "slime-chunks", "Shows slime chunks calculated from the world seed.");
+    }
+
+    @Override
+    public void onActivate() {
+        if (Seeds.get().getSeed() == null) {
+            error("No seed found. To set a seed do .seed <seed>");
+            toggle();
+        }
+    }
+
+    @EventHandler
+    private void onRender(Render3DEvent event) {
+        Seed seed = Seeds.get().getSeed();
+        if (mc.player == null || seed == null || PlayerUtils.getDimension() != Dimension.Overworld) return;
+
+        int chunkX = mc.player.getChunkPos().x;
+        int chunkZ = mc.player.getChunkPos().z;
+        SlimeChunkMap map = SlimeChunkMap.getNow(seed, chunkX, chunkZ);
+        if (map == null) return;
+
+        int y = renderHeight.get();
+        int r = range.get();
+        for (int x = chunkX - r; x <= chunkX + r; x++) {
+            for (int z = chunkZ - r; z <= chunkZ + r; z++) {
+                if (!map.isSlimeChunk(x, z)) continue;
+                event.renderer.box(x << 4, y, z << 4, (x << 4) + 16, y + 1, (z << 4) + 16, sideColor.get(), lineColor.get(), shapeMode.get(), 0);
+            }
+        }
+
+        if (cluster.get()) {
+            CPos center = map.densest(chunkX, chunkZ, r, clusterSize.get());
+            if (center == null) return;
+            int half = clusterSize.get() >> 1;
+            int minX = (center.getX() - half) << 4, minZ = (center.getZ() - half) << 4;
+            int size = clusterSize.get() << 4;
+            event.renderer.box(minX, y, minZ, minX + size, y + 1, minZ + size, clusterColor.get(), clusterColor.get(), ShapeMode.Lines, 0);
+        }
+    }
+}
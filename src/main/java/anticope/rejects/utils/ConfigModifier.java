@@ -55,6 +55,15 @@ public class ConfigModifier {
             .build()
     );
 
+    public final Setting<Boolean> virtualThreadPings = sgRejects.add(new BoolSetting.Builder()
+            .name("virtual-thread-pings")
+            .description("Run server pings and port scans on virtual threads instead of one platform thread each.")
+            .defaultValue(false)
+            .defaultValue(RejectsConfig.get().virtualThreadPings)
+            .onChanged(v -> RejectsConfig.get().virtualThreadPings = v)
+            .build()
+    );
+
     public static ConfigModifier get() {
         if (INSTANCE == null) INSTANCE = new ConfigModifier();
         return INSTANCE;
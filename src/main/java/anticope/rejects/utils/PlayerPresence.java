@@ -0,0 +1,125 @@
+package anticope.rejects.utils;
+
+import anticope.rejects.events.GameModeChangedEvent;
+import anticope.rejects.events.PlayerJoinedEvent;
+import anticope.rejects.events.PlayerLeftEvent;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.utils.PostInit;
+import meteordevelopment.orbit.EventHandler;
+import net.minecraft.network.packet.s2c.play.PlayerListS2CPacket;
+import net.minecraft.network.packet.s2c.play.PlayerRemoveS2CPacket;
+import net.minecraft.world.GameMode;
+
+import java.util.*;
+
+/**
+ * The tab list as the server sends it, indexed by uuid and lowercase name. It is updated
+ * from {@link PlayerListS2CPacket} and {@link PlayerRemoveS2CPacket} after the client has
+ * applied them, and posts {@link PlayerJoinedEvent}, {@link PlayerLeftEvent} and
+ * {@link GameModeChangedEvent} for whatever changed, so modules don't have to poll the list.
+ * A player counts as online while they are listed, like in
+ * {@link net.minecraft.client.network.ClientPlayNetworkHandler#getPlayerList()}.
+ */
+public class PlayerPresence {
+    private static final Map<UUID, Player> BY_ID = new HashMap<>();
+    private static final Map<String, Player> BY_NAME = new HashMap<>();
+
+    public record Player(UUID id, String name, GameMode gameMode, int latency, boolean listed) {}
+
+    @PostInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(PlayerPresence.class);
+    }
+
+    @EventHandler
+    private static void onGameJoined(GameJoinedEvent event) {
+        clear();
+    }
+
+    @EventHandler
+    private static void onGameLeft(GameLeftEvent event) {
+        clear();
+    }
+
+    private static void clear() {
+        BY_ID.clear();
+        BY_NAME.clear();
+    }
+
+    /**
+     * @return the listed player with that uuid, or {@code null}
+     */
+    public static Player get(UUID id) {
+        Player player = BY_ID.get(id);
+        return player != null && player.listed() ? player : null;
+    }
+
+    /**
+     * @return the listed player with that name in any case, or {@code null}
+     */
+    public static Player get(String name) {
+        return BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public static boolean isOnline(String name) {
+        return get(name) != null;
+    }
+
+    public static Collection<Player> getOnline() {
+        return Collections.unmodifiableCollection(BY_NAME.values());
+    }
+
+    /**
+     * Called on the client thread once the client has applied the packet.
+     */
+    public static void onPlayerList(PlayerListS2CPacket packet) {
+        EnumSet<PlayerListS2CPacket.Action> actions = packet.getActions();
+        boolean added = actions.contains(PlayerListS2CPacket.Action.ADD_PLAYER);
+
+        for (PlayerListS2CPacket.Entry entry : packet.getEntries()) {
+            Player old = BY_ID.get(entry.profileId());
+            // the client ignores updates for players it wasn't told about
+            if (old == null && (!added || entry.profile() == null)) continue;
+
+            Player player = new Player(
+                entry.profileId(),
+                old != null ? old.name() : entry.profile().getName(),
+                actions.contains(PlayerListS2CPacket.Action.UPDATE_GAME_MODE) || old == null ? entry.gameMode() : old.gameMode(),
+                actions.contains(PlayerListS2CPacket.Action.UPDATE_LATENCY) || old == null ? entry.latency() : old.latency(),
+                actions.contains(PlayerListS2CPacket.Action.UPDATE_LISTED) ? entry.listed() : old != null && old.listed()
+            );
+            put(player, old);
+
+            boolean wasListed = old != null && old.listed();
+            if (!wasListed && player.listed()) {
+                MeteorClient.EVENT_BUS.post(PlayerJoinedEvent.get(player));
+            } else if (wasListed && !player.listed()) {
+                MeteorClient.EVENT_BUS.post(PlayerLeftEvent.get(player));
+            }
+            if (old != null && old.gameMode() != player.gameMode()) {
+                MeteorClient.EVENT_BUS.post(GameModeChangedEvent.get(player, old.gameMode()));
+            }
+        }
+    }
+
+    /**
+     * Called on the client thread once the client has applied the packet.
+     */
+    public static void onPlayerRemove(PlayerRemoveS2CPacket packet) {
+        for (UUID id : packet.profileIds()) {
+            Player old = BY_ID.remove(id);
+            if (old == null || !old.listed()) continue;
+            BY_NAME.remove(old.name().toLowerCase(Locale.ROOT), old);
+            MeteorClient.EVENT_BUS.post(PlayerLeftEvent.get(old));
+        }
+    }
+
+    private static void put(Player player, Player old) {
+        BY_ID.put(player.id(), player);
+        String key = player.name().toLowerCase(Locale.ROOT);
+        if (player.listed()) BY_NAME.put(key, player);
+        else if (old != null) BY_NAME.remove(key, old);
+    }
+}
@@ -30,6 +30,7 @@ public class RejectsConfig extends System<RejectsConfig> {
     public Set<String> hiddenModules = new HashSet<>();
     public boolean loadSystemFonts = true;
     public boolean duplicateModuleNames = false;
+    public boolean virtualThreadPings = false;
 
     public RejectsConfig() {
         super("rejects-config");
@@ -70,6 +71,7 @@ public class RejectsConfig extends System<RejectsConfig> {
         tag.putString("httpUserAgent", httpUserAgent);
         tag.putBoolean("loadSystemFonts", loadSystemFonts);
         tag.putBoolean("duplicateModuleNames", duplicateModuleNames);
+        tag.putBoolean("virtualThreadPings", virtualThreadPings);
 
         NbtList modulesTag = new NbtList();
         for (String module : hiddenModules) modulesTag.add(NbtString.of(module));
@@ -84,6 +86,7 @@ public class RejectsConfig extends System<RejectsConfig> {
         httpUserAgent = tag.getString("httpUserAgent");
         loadSystemFonts = tag.getBoolean("loadSystemFonts");
         duplicateModuleNames = tag.getBoolean("duplicateModuleNames");
+        virtualThreadPings = tag.getBoolean("virtualThreadPings");
 
         NbtList valueTag = tag.getList("hiddenModules", 8);
         for (NbtElement tagI : valueTag) {
@@ -2,7 +2,11 @@ package anticope.rejects.utils;
 
 import anticope.rejects.utils.seeds.Seed;
 import anticope.rejects.utils.seeds.Seeds;
-import baritone.api.BaritoneAPI;
+import anticope.rejects.utils.worldgen.FeatureBlockIndex;
+import anticope.rejects.utils.worldgen.LocateProgress;
+import anticope.rejects.utils.worldgen.SlimeChunkMap;
+import anticope.rejects.utils.worldgen.StrongholdCache;
+import anticope.rejects.utils.worldgen.WorldGenContext;
 import cubitect.Cubiomes;
 
 import com.seedfinding.mcbiome.source.BiomeSource;
@@ -14,6 +18,8 @@ import com.seedfinding.mccore.util.data.SpiralIterator;
 import com.seedfinding.mccore.util.pos.*;
 import com.seedfinding.mccore.version.MCVersion;
 import com.seedfinding.mcterrain.TerrainGenerator;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.utils.PostInit;
 import meteordevelopment.meteorclient.utils.player.ChatUtils;
 import meteordevelopment.meteorclient.utils.player.PlayerUtils;
 
@@ -115,6 +121,10 @@ public class WorldGenUtils {
        ));
     }};
 
+    // chunks around the player searched for feature blocks, as far as the baritone scan went
+    private static final int BLOCK_SEARCH_RADIUS = 32;
+    private static FeatureBlockIndex blockIndex;
+
     public enum Feature {
         buried_treasure,
         mansion,
@@ -129,7 +139,23 @@ public class WorldGenUtils {
         desert_pyramid
     }
 
+    @PostInit
+    public static void init() {
+        Set<Block> blocks = new HashSet<>();
+        FEATURE_BLOCKS.values().forEach(blocks::addAll);
+        blockIndex = new FeatureBlockIndex(blocks);
+        MeteorClient.EVENT_BUS.subscribe(blockIndex);
+    }
+
     public static BlockPos locateFeature(Cubiomes.StructureType cfeature, BlockPos center) {
+        return locateFeature(cfeature, center, new LocateProgress());
+    }
+
+    /**
+     * Seed based searches run on the calling thread and report to {@code progress}, the
+     * fallbacks that read the client world are always run on the client thread.
+     */
+    public static BlockPos locateFeature(Cubiomes.StructureType cfeature, BlockPos center, LocateProgress progress) {
 				Feature feature = switch (cfeature) {
 					case Treasure -> Feature.buried_treasure;
 					case Mansion -> Feature.mansion;
@@ -150,12 +176,18 @@ public class WorldGenUtils {
         }
         if (seed != null) {
             try {
-                pos = locateFeature(seed, feature, center);
+                pos = locateFeature(seed, feature, center, progress);
             } catch (Exception | Error ex) {
                 LOG.error(ex);
             }
-            if (pos != null) return pos;
+            if (pos != null || progress.isCancelled()) return pos;
         }
+        if (mc.isOnThread()) return locateFeatureInWorld(feature);
+        return mc.submit(() -> locateFeatureInWorld(feature)).join();
+    }
+
+    private static BlockPos locateFeatureInWorld(Feature feature) {
+        BlockPos pos = null;
         if (mc.player != null) {
             ItemStack stack = mc.player.getStackInHand(Hand.MAIN_HAND);
             if (stack.getItem() != Items.FILLED_MAP)
@@ -190,21 +222,13 @@ public class WorldGenUtils {
 
     private static BlockPos locateFeatureBlocks(Feature feature) {
         List<Block> blocks = FEATURE_BLOCKS.get(feature);
-        if (blocks == null) return null;
-        List<BlockPos> posList = BaritoneAPI
-            .getProvider()
-            .getWorldScanner()
-            .scanChunkRadius(
-                BaritoneAPI
-                    .getProvider()
-                    .getPrimaryBaritone()
-                    .getPlayerContext(),
-            blocks,64,10,32);
-        if (posList.isEmpty()) return null;
-        if (posList.size() < 5) {
-            ChatUtils.warningPrefix("Locate", "Only %d block(s) found. This search might be a false positive.", posList.size());
+        if (blocks == null || mc.player == null) return null;
+        FeatureBlockIndex.Cluster cluster = blockIndex.nearestCluster(blocks, mc.player.getBlockPos(), 5, BLOCK_SEARCH_RADIUS);
+        if (cluster == null) return null;
+        if (cluster.count() < 5) {
+            ChatUtils.warningPrefix("Locate", "Only %d block(s) found. This search might be a false positive.", cluster.count());
         }
-        return posList.get(0);
+        return cluster.pos();
     }
 
     private static BlockPos locateFeatureEntities(Feature feature) {
@@ -220,25 +244,32 @@ public class WorldGenUtils {
         return null;
     }
 
-    private static BlockPos locateFeature(Seed seed, Feature feature, BlockPos center) {
-        if (feature == Feature.slime_chunk) return locateSlimeChunk(seed, center);
-        return locateStructure(seed, feature, center);
+    private static BlockPos locateFeature(Seed seed, Feature feature, BlockPos center, LocateProgress progress) {
+        if (feature == Feature.slime_chunk) return locateSlimeChunk(seed, center, progress);
+        return locateStructure(seed, feature, center, progress);
     }
 
-    private static BlockPos locateSlimeChunk(Seed seed, BlockPos center) {
+    private static BlockPos locateSlimeChunk(Seed seed, BlockPos center, LocateProgress progress) {
         Dimension dimension = getDimension(Feature.slime_chunk);
         MCVersion mcVersion = seed.version;
         CPos centerChunk = new CPos(center.getX() >> 4, center.getZ() >> 4);
-        CPos slimeChunkPos = locateSlimeChunk(new SlimeChunk(mcVersion), centerChunk, 6400, seed.seed, new ChunkRand(), dimension);
+        SlimeChunkMap map = SlimeChunkMap.getNow(seed, centerChunk.getX(), centerChunk.getZ());
+        if (map != null && map.contains(centerChunk.getX(), centerChunk.getZ())) {
+            CPos nearest = map.nearest(centerChunk.getX(), centerChunk.getZ());
+            if (nearest != null) return toBlockPos(nearest.toBlockPos());
+        }
+        CPos slimeChunkPos = locateSlimeChunk(WorldGenContext.get(seed, dimension).getFeature(SlimeChunk.class, SlimeChunk::new), centerChunk, 6400, seed.seed, WorldGenContext.chunkRand(), dimension, progress);
         if (slimeChunkPos == null) return null;
         return toBlockPos(slimeChunkPos.toBlockPos());
     }
 
-    private static CPos locateSlimeChunk(SlimeChunk slimeChunk, CPos centerChunk, int radius, long seed, ChunkRand rand, Dimension dimension) {
+    private static CPos locateSlimeChunk(SlimeChunk slimeChunk, CPos centerChunk, int radius, long seed, ChunkRand rand, Dimension dimension, LocateProgress progress) {
         if (!slimeChunk.isValidDimension(dimension))
             return null;
         SpiralIterator<CPos> spiralIterator = new SpiralIterator<>(centerChunk, new CPos(radius, radius), (x, y, z) -> new CPos(x, z));
         for (CPos next : spiralIterator) {
+            if (progress.isCancelled()) return null;
+            progress.step(chunkDistance(centerChunk, next) << 4);
             SlimeChunk.Data data = slimeChunk.at(next.getX(), next.getZ(), true);
             if (data.testStart(seed, rand)) {
                 return next;
@@ -247,50 +278,52 @@ public class WorldGenUtils {
         return null;
     }
 
-    private static BlockPos locateStructure(Seed seed, Feature feature, BlockPos center) {
+    private static BlockPos locateStructure(Seed seed, Feature feature, BlockPos center, LocateProgress progress) {
         Dimension dimension = getDimension(feature);
         if (dimension == Dimension.OVERWORLD && seed.version.isNewerThan(MCVersion.v1_18)) return null; // TODO: enable 1.18 support when mc_biome updates
         MCVersion mcVersion = seed.version;
-        Structure<?, ?> structure = getStructure(feature, mcVersion);
+        if (feature == Feature.stronghold) return locateStronghold(seed, center);
+        WorldGenContext context = WorldGenContext.get(seed, dimension);
+        Structure<?, ?> structure = context.getFeature(feature, version -> getStructure(feature, version));
         if (structure == null) return null;
-        BiomeSource biomeSource = BiomeSource.of(dimension, mcVersion, seed.seed);
+        BiomeSource biomeSource = context.getBiomeSource();
         if (!structure.isValidDimension(biomeSource.getDimension()))
             return null;
-        BPos structurePos = locateStructure(structure, new BPos(center.getX(), center.getY(), center.getZ()), 6400, new ChunkRand(), biomeSource, TerrainGenerator.of(biomeSource));
+        BPos structurePos = locateStructure(structure, new BPos(center.getX(), center.getY(), center.getZ()), 6400, WorldGenContext.chunkRand(), biomeSource, context.getTerrainGenerator(), progress);
         if (structurePos == null) return null;
         return toBlockPos(structurePos);
     }
 
-    private static BPos locateStructure(Structure<?, ?> structure, BPos center, int radius, ChunkRand chunkRand, BiomeSource source, TerrainGenerator terrainGenerator) {
+    private static BlockPos locateStronghold(Seed seed, BlockPos center) {
+        CPos closest = StrongholdCache.get(seed).join().nearest(center.getX() >> 4, center.getZ() >> 4);
+        if (closest == null) return null;
+        BPos dimPos = closest.toBlockPos().add(9, 0, 9);
+        return new BlockPos(dimPos.getX(), 0, dimPos.getZ());
+    }
+
+    private static BPos locateStructure(Structure<?, ?> structure, BPos center, int radius, ChunkRand chunkRand, BiomeSource source, TerrainGenerator terrainGenerator, LocateProgress progress) {
         if (structure instanceof RegionStructure<?, ?> regionStructure) {
             int chunkInRegion = regionStructure.getSpacing();
             int regionSize = chunkInRegion * 16;
 
             final int border = 30_000_000;
-            SpiralIterator<RPos> spiralIterator = new SpiralIterator<>(center.toRegionPos(regionSize), new BPos(-border, 0, -border).toRegionPos(regionSize), new BPos(border, 0, border).toRegionPos(regionSize), 1, (x, y, z) -> new RPos(x, z, regionSize));
+            RPos centerRegion = center.toRegionPos(regionSize);
+            SpiralIterator<RPos> spiralIterator = new SpiralIterator<>(centerRegion, new BPos(-border, 0, -border).toRegionPos(regionSize), new BPos(border, 0, border).toRegionPos(regionSize), 1, (x, y, z) -> new RPos(x, z, regionSize));
             return StreamSupport.stream(spiralIterator.spliterator(), false)
+                .takeWhile(rPos -> !progress.isCancelled())
+                .peek(rPos -> progress.step(Math.max(Math.abs(rPos.getX() - centerRegion.getX()), Math.abs(rPos.getZ() - centerRegion.getZ())) * regionSize))
                 .map(rPos -> regionStructure.getInRegion(source.getWorldSeed(), rPos.getX(), rPos.getZ(), chunkRand))
                 .filter(Objects::nonNull)
                 .filter(cPos -> (regionStructure.canSpawn(cPos, source)) && (terrainGenerator == null || regionStructure.canGenerate(cPos, terrainGenerator)))
                 .findAny().map(cPos -> cPos.toBlockPos().add(9, 0, 9)).orElse(null);
         } else {
-            if (structure instanceof Stronghold strongholdStructure) {
-                CPos currentChunkPos = center.toChunkPos();
-                int squaredDistance = Integer.MAX_VALUE;
-                CPos closest = new CPos(0, 0);
-                for (CPos stronghold : strongholdStructure.getAllStarts(source, chunkRand)) {
-                    int newSquaredDistance = (currentChunkPos.getX() - stronghold.getX()) * (currentChunkPos.getX() - stronghold.getX()) + (currentChunkPos.getZ() - stronghold.getZ()) * (currentChunkPos.getZ() - stronghold.getZ());
-                    if (newSquaredDistance < squaredDistance) {
-                        squaredDistance = newSquaredDistance;
-                        closest = stronghold;
-                    }
-                }
-                BPos dimPos = closest.toBlockPos().add(9, 0, 9);
-                return new BPos(dimPos.getX(), 0, dimPos.getZ());
-            } else if (structure instanceof Mineshaft mineshaft) {
-                SpiralIterator<CPos> spiralIterator = new SpiralIterator<>(new CPos(center.getX() >> 4, center.getZ() >> 4), new CPos(radius, radius), (x, y, z) -> new CPos(x, z));
+            if (structure instanceof Mineshaft mineshaft) {
+                CPos centerChunk = new CPos(center.getX() >> 4, center.getZ() >> 4);
+                SpiralIterator<CPos> spiralIterator = new SpiralIterator<>(centerChunk, new CPos(radius, radius), (x, y, z) -> new CPos(x, z));
 
                 return StreamSupport.stream(spiralIterator.spliterator(), false)
+                    .takeWhile(cPos -> !progress.isCancelled())
+                    .peek(cPos -> progress.step(chunkDistance(centerChunk, cPos) << 4))
                     .filter(cPos -> {
                         com.seedfinding.mcfeature.Feature.Data<Mineshaft> data = mineshaft.at(cPos.getX(), cPos.getZ());
                         return data.testStart(source.getWorldSeed(), chunkRand) && data.testBiome(source) && data.testGenerate(terrainGenerator);
@@ -301,6 +334,10 @@ public class WorldGenUtils {
         return null;
     }
 
+    private static int chunkDistance(CPos a, CPos b) {
+        return Math.max(Math.abs(a.getX() - b.getX()), Math.abs(a.getZ() - b.getZ()));
+    }
+
     private static Dimension getDimension(Feature feature) {
         return switch (feature) {
             case buried_treasure -> Dimension.OVERWORLD;
@@ -0,0 +1,175 @@
+package anticope.rejects.utils.chat;
+
+/**
+ * Splits a received chat line into sender and message in one pass. Recognises the same
+ * formats, with the same precedence, as these patterns did:
+ * <pre>
+ * public:   ^\s*[&lt;\[]?NAME[&gt;\]]?\s*[:»]\s*(.+)$
+ * dm:       ^\s*(?:from\s+)?NAME\s*-&gt;\s*(?:me|you)\s*:\s*(.+)$      (any case)
+ * dm:       ^\s*NAME\s+whispers\s+to\s+you:\s*(.+)$                (any case)
+ * dm:       ^\s*\[\s*PM\s*]\s*NAME\s*[:»]\s*(.+)$
+ * </pre>
+ * where NAME is 3 to 16 of {@code [A-Za-z0-9_]}. The first non blank character already rules
+ * out most lines, so server messages cost next to nothing.
+ */
+public class ChatLineClassifier {
+    private ChatLineClassifier() {
+    }
+
+    public record Line(String sender, String body, boolean isPrivate) {}
+
+    /**
+     * @return the sender and trimmed message, or {@code null} if the line isn't chat
+     */
+    public static Line classify(String raw) {
+        int end = contentEnd(raw);
+        int i = skipSpace(raw, 0, end);
+        if (i >= end) return null;
+
+        char first = raw.charAt(i);
+        if (first == '<') return publicChat(raw, i + 1, end);
+        if (first == '[') {
+            Line line = publicChat(raw, i + 1, end);
+            return line != null ? line : bracketDm(raw, i + 1, end);
+        }
+        if (!isNameChar(first)) return null;
+
+        int nameEnd = nameEnd(raw, i, end);
+        Line line = publicChat(raw, i, end);
+        if (line == null) line = essentialsDm(raw, i, nameEnd, end);
+        if (line == null) line = vanillaDm(raw, i, nameEnd, end);
+        return line;
+    }
+
+    // NAME [>\]]? \s* [:»] msg
+    private static Line publicChat(String raw, int start, int end) {
+        int nameEnd = nameEnd(raw, start, end);
+        if (!validName(start, nameEnd)) return null;
+        int i = nameEnd;
+        if (i < end && (raw.charAt(i) == '>' || raw.charAt(i) == ']')) i++;
+        i = skipSpace(raw, i, end);
+        if (i >= end || (raw.charAt(i) != ':' && raw.charAt(i) != '»')) return null;
+        return line(raw, start, nameEnd, i + 1, end, false);
+    }
+
+    // (from\s+)? NAME \s* -> \s* (me|you) \s* : msg
+    private static Line essentialsDm(String raw, int start, int nameEnd, int end) {
+        if (nameEnd - start == 4 && matchesIgnoreCase(raw, start, end, "from") && nameEnd < end && isSpace(raw.charAt(nameEnd))) {
+            int name = skipSpace(raw, nameEnd, end);
+            Line line = essentialsDmAfterFrom(raw, name, nameEnd(raw, name, end), end);
+            if (line != null) return line;
+        }
+        return essentialsDmAfterFrom(raw, start, nameEnd, end);
+    }
+
+    private static Line essentialsDmAfterFrom(String raw, int start, int nameEnd, int end) {
+        if (!validName(start, nameEnd)) return null;
+        int i = skipSpace(raw, nameEnd, end);
+        if (!raw.startsWith("->", i) || i + 2 > end) return null;
+        i = skipSpace(raw, i + 2, end);
+        if (matchesIgnoreCase(raw, i, end, "me")) i += 2;
+        else if (matchesIgnoreCase(raw, i, end, "you")) i += 3;
+        else return null;
+        i = skipSpace(raw, i, end);
+        if (i >= end || raw.charAt(i) != ':') return null;
+        return line(raw, start, nameEnd, i + 1, end, true);
+    }
+
+    // NAME \s+ whispers \s+ to \s+ you: msg
+    private static Line vanillaDm(String raw, int start, int nameEnd, int end) {
+        if (!validName(start, nameEnd)) return null;
+        int i = keyword(raw, nameEnd, end, "whispers");
+        if (i < 0) return null;
+        i = keyword(raw, i, end, "to");
+        if (i < 0) return null;
+        i = keyword(raw, i, end, "you:");
+        if (i < 0) return null;
+        return line(raw, start, nameEnd, i, end, true);
+    }
+
+    // \[ \s* PM \s* ] \s* NAME \s* [:»] msg, the opening bracket is already consumed
+    private static Line bracketDm(String raw, int start, int end) {
+        int i = skipSpace(raw, start, end);
+        if (!raw.startsWith("PM", i) || i + 2 > end) return null;
+        i = skipSpace(raw, i + 2, end);
+        if (i >= end || raw.charAt(i) != ']') return null;
+        int name = skipSpace(raw, i + 1, end);
+        int nameEnd = nameEnd(raw, name, end);
+        if (!validName(name, nameEnd)) return null;
+        i = skipSpace(raw, nameEnd, end);
+        if (i >= end || (raw.charAt(i) != ':' && raw.charAt(i) != '»')) return null;
+        return line(raw, name, nameEnd, i + 1, end, true);
+    }
+
+    // at least one space, then the word in any case
+    private static int keyword(String raw, int i, int end, String word) {
+        if (i >= end || !isSpace(raw.charAt(i))) return -1;
+        i = skipSpace(raw, i, end);
+        if (!matchesIgnoreCase(raw, i, end, word)) return -1;
+        return i + word.length();
+    }
+
+    /**
+     * The message is everything after the separator and any spaces, it can't span lines. If
+     * only spaces follow, the patterns still matched with a message that trims to nothing.
+     */
+    private static Line line(String raw, int nameStart, int nameEnd, int msgStart, int end, boolean isPrivate) {
+        int i = skipSpace(raw, msgStart, end);
+        if (i >= end) {
+            if (i == msgStart || isLineBreak(raw.charAt(end - 1))) return null;
+            return new Line(raw.substring(nameStart, nameEnd), "", isPrivate);
+        }
+        for (int j = i; j < end; j++) {
+            if (isLineBreak(raw.charAt(j))) return null;
+        }
+        return new Line(raw.substring(nameStart, nameEnd), raw.substring(i, end).trim(), isPrivate);
+    }
+
+    // $ also matches in front of one final line break
+    private static int contentEnd(String raw) {
+        int end = raw.length();
+        if (raw.endsWith("\r\n")) return end - 2;
+        if (end > 0 && isLineBreak(raw.charAt(end - 1))) return end - 1;
+        return end;
+    }
+
+    private static int nameEnd(String raw, int i, int end) {
+        while (i < end && isNameChar(raw.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean validName(int start, int end) {
+        int length = end - start;
+        return length >= 3 && length <= 16;
+    }
+
+    private static int skipSpace(String raw, int i, int end) {
+        while (i < end && isSpace(raw.charAt(i))) i++;
+        return i;
+    }
+
+    // (?i) without UNICODE_CASE only folds ASCII letters, regionMatches would also take ı for i
+    private static boolean matchesIgnoreCase(String raw, int i, int end, String lower) {
+        if (i + lower.length() > end) return false;
+        for (int j = 0; j < lower.length(); j++) {
+            char c = raw.charAt(i + j);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != lower.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // \s without UNICODE_CHARACTER_CLASS
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    // what . refuses to match
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
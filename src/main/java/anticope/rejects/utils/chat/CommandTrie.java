@@ -0,0 +1,50 @@
+package anticope.rejects.utils.chat;
+
+/**
+ * Maps command words to handlers, matched case-insensitively while walking the line once
+ * instead of lowercasing it or comparing against every command in turn. Only ASCII command
+ * words are supported.
+ */
+public class CommandTrie<T> {
+    private final Node<T> root = new Node<>();
+
+    public CommandTrie<T> add(String word, T value) {
+        Node<T> node = root;
+        for (int i = 0; i < word.length(); i++) {
+            char c = lower(word.charAt(i));
+            if (c >= 128 || c == ' ') throw new IllegalArgumentException("Invalid command word " + word);
+            @SuppressWarnings("unchecked")
+            Node<T>[] children = node.children == null ? node.children = new Node[128] : node.children;
+            node = children[c] == null ? children[c] = new Node<>() : children[c];
+        }
+        node.value = value;
+        return this;
+    }
+
+    /**
+     * Matches the first word of the line, which ends at the first space.
+     *
+     * @return the handler and whatever follows that space, or {@code null} if no command has that word
+     */
+    public Match<T> match(String line) {
+        Node<T> node = root;
+        int i = 0;
+        for (; i < line.length() && line.charAt(i) != ' '; i++) {
+            char c = lower(line.charAt(i));
+            if (c >= 128 || node.children == null || (node = node.children[c]) == null) return null;
+        }
+        if (node.value == null) return null;
+        return new Match<>(node.value, i < line.length() ? line.substring(i + 1) : "");
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public record Match<T>(T value, String args) {}
+
+    private static class Node<T> {
+        private Node<T>[] children;
+        private T value;
+    }
+}
@@ -0,0 +1,239 @@
+package anticope.rejects.utils.chat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Masks outgoing chat the way these patterns did when applied one after another:
+ * <pre>
+ * dangerous: (?i)\{[^}]*\b(?:player\.(?:x|y|z|pos(?:ition)?|yaw|pitch|rotation|facing)|camera\.(?:yaw|pitch)|server\.(?:tps|mspt))\b[^}]*}
+ * braces:    \{[^}]*}                                        every span becomes [blocked] if one is dangerous, else gets fullwidth braces
+ * triple:    \b-?\d{1,7}\b(?:[ ,]+-?\d{1,7}\b){2}             [coords blocked]
+ * labelled:  (?i)\b(X|Y|Z|Yaw|Pitch)\s*[:=]\s*-?\d+(?:\.\d+)?  [coords blocked], looked for after the triples are masked
+ * </pre>
+ * Text without braces is handled in a single pass. Masking is repeated until nothing changes,
+ * which the patterns never did, so a result is always its own result. Results are cached under
+ * both the text and the result, so text that comes back through another send path is only
+ * looked up.
+ */
+public class LeakGuard {
+    private static final int CACHE_SIZE = 256;
+    private static final String BLOCKED = "[blocked]";
+    private static final String COORDS_BLOCKED = "[coords blocked]";
+    private static final String[] LABELS = {"x", "y", "z", "yaw", "pitch"};
+    private static final String[][] DANGEROUS = {
+        {"player.", "x", "y", "z", "pos", "position", "yaw", "pitch", "rotation", "facing"},
+        {"camera.", "yaw", "pitch"},
+        {"server.", "tps", "mspt"}
+    };
+
+    private final Map<String, String> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private boolean blockDangerous = true;
+    private boolean stripBraces = true;
+    private boolean blockCoords = true;
+
+    /**
+     * Clears the cache when the options differ from the last call.
+     */
+    public LeakGuard configure(boolean blockDangerous, boolean stripBraces, boolean blockCoords) {
+        if (blockDangerous != this.blockDangerous || stripBraces != this.stripBraces || blockCoords != this.blockCoords) {
+            this.blockDangerous = blockDangerous;
+            this.stripBraces = stripBraces;
+            this.blockCoords = blockCoords;
+            cache.clear();
+        }
+        return this;
+    }
+
+    public String sanitize(String s) {
+        String out = cache.get(s);
+        if (out != null) return out;
+
+        // masking can line up new matches, "x:1y=2" only has a labelled y once the x is gone
+        out = s;
+        for (String prev = null; out != prev; ) {
+            prev = out;
+            out = braces(out);
+            if (blockCoords) out = coords(out);
+        }
+        cache.put(s, out);
+        // the result sanitizes to itself, so a later pass over it is a lookup
+        if (!out.equals(s)) cache.put(out, out);
+        return out;
+    }
+
+    /**
+     * Gives every {...} span fullwidth braces so overlays can't evaluate it.
+     */
+    public static String fullwidthBraces(String s) {
+        int open = s.indexOf('{');
+        if (open < 0 || s.indexOf('}', open) < 0) return s;
+        return replaceBraces(s, open, false);
+    }
+
+    private String braces(String s) {
+        int open = s.indexOf('{');
+        if (open < 0 || s.indexOf('}', open) < 0) return s;
+        boolean block = blockDangerous && hasDangerousSpan(s, open);
+        if (!block && !stripBraces) return s;
+        return replaceBraces(s, open, block);
+    }
+
+    // a span runs from a { to the next }, any { in between is part of it
+    private static String replaceBraces(String s, int open, boolean block) {
+        StringBuilder out = new StringBuilder(s.length() + 8);
+        int from = 0;
+        while (open >= 0) {
+            int close = s.indexOf('}', open + 1);
+            if (close < 0) break;
+            out.append(s, from, open);
+            if (block) out.append(BLOCKED);
+            else out.append('｛').append(s, open + 1, close).append('｝');
+            from = close + 1;
+            open = s.indexOf('{', from);
+        }
+        return out.append(s, from, s.length()).toString();
+    }
+
+    private static boolean hasDangerousSpan(String s, int open) {
+        while (open >= 0) {
+            int close = s.indexOf('}', open + 1);
+            if (close < 0) return false;
+            for (int i = open + 1; i < close; i++) {
+                if (!isWord(s.charAt(i - 1)) && isDangerousToken(s, i, close)) return true;
+            }
+            open = s.indexOf('{', close + 1);
+        }
+        return false;
+    }
+
+    private static boolean isDangerousToken(String s, int i, int end) {
+        for (String[] token : DANGEROUS) {
+            String prefix = token[0];
+            if (!matchesIgnoreCase(s, i, end, prefix)) continue;
+            int start = i + prefix.length();
+            int wordEnd = start;
+            while (wordEnd < end && isWord(s.charAt(wordEnd))) wordEnd++;
+            for (int t = 1; t < token.length; t++) {
+                if (wordEnd - start == token[t].length() && matchesIgnoreCase(s, start, end, token[t])) return true;
+            }
+        }
+        return false;
+    }
+
+    private static String coords(String s) {
+        StringBuilder out = null;
+        int from = 0;
+        int i = 0;
+        while (i < s.length()) {
+            int end = tripleEnd(s, i);
+            if (end < 0) {
+                end = labelledEnd(s, i, s.length());
+                // a triple starting inside the value was masked first, so the value stops there
+                int triple = end < 0 ? -1 : nextTriple(s, i + 1, end);
+                if (triple >= 0) end = labelledEnd(s, i, triple);
+            }
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            if (out == null) out = new StringBuilder(s.length() + 16);
+            out.append(s, from, i).append(COORDS_BLOCKED);
+            i = from = end;
+        }
+        return out == null ? s : out.append(s, from, s.length()).toString();
+    }
+
+    private static int nextTriple(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (tripleEnd(s, i) >= 0) return i;
+        }
+        return -1;
+    }
+
+    // three numbers of up to 7 digits separated by spaces or commas
+    private static int tripleEnd(String s, int i) {
+        int j = i;
+        boolean wordBefore = i > 0 && isWord(s.charAt(i - 1));
+        if (j < s.length() && s.charAt(j) == '-') {
+            // the word boundary in front of a minus needs a word character before it
+            if (!wordBefore) return -1;
+            j++;
+        } else if (wordBefore) {
+            return -1;
+        }
+        j = numberEnd(s, j);
+
+        for (int n = 0; n < 2 && j >= 0; n++) {
+            int k = j;
+            while (k < s.length() && (s.charAt(k) == ' ' || s.charAt(k) == ',')) k++;
+            if (k == j) return -1;
+            if (k < s.length() && s.charAt(k) == '-') k++;
+            j = numberEnd(s, k);
+        }
+        return j;
+    }
+
+    // 1 to 7 digits followed by a word boundary
+    private static int numberEnd(String s, int i) {
+        int j = digitsEnd(s, i, s.length());
+        if (j == i || j - i > 7 || (j < s.length() && isWord(s.charAt(j)))) return -1;
+        return j;
+    }
+
+    // x, y, z, yaw or pitch, then : or = and a number, not looking past end
+    private static int labelledEnd(String s, int i, int end) {
+        if (i > 0 && isWord(s.charAt(i - 1))) return -1;
+        for (String label : LABELS) {
+            if (!matchesIgnoreCase(s, i, end, label)) continue;
+            int j = skipSpace(s, i + label.length(), end);
+            if (j >= end || (s.charAt(j) != ':' && s.charAt(j) != '=')) continue;
+            j = skipSpace(s, j + 1, end);
+            if (j < end && s.charAt(j) == '-') j++;
+            int digits = digitsEnd(s, j, end);
+            if (digits == j) continue;
+            if (digits + 1 < end && s.charAt(digits) == '.' && isDigit(s.charAt(digits + 1))) digits = digitsEnd(s, digits + 1, end);
+            return digits;
+        }
+        return -1;
+    }
+
+    private static int digitsEnd(String s, int i, int end) {
+        while (i < end && isDigit(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int skipSpace(String s, int i, int end) {
+        while (i < end && isSpace(s.charAt(i))) i++;
+        return i;
+    }
+
+    // (?i) without UNICODE_CASE only folds ASCII letters
+    private static boolean matchesIgnoreCase(String s, int i, int end, String lower) {
+        if (i + lower.length() > end) return false;
+        for (int j = 0; j < lower.length(); j++) {
+            char c = s.charAt(i + j);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != lower.charAt(j)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -1,65 +1,215 @@
 package anticope.rejects.utils.portscanner;
 
+import anticope.rejects.MeteorRejectsAddon;
+import anticope.rejects.utils.server.ScanRateController;
+
+import java.io.IOException;
+import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.*;
-import java.util.function.Consumer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Scans ports with non-blocking connects on a single selector. Up to {@code window}
+ * connections are open at once and a new one starts as soon as one completes, so the whole
+ * range costs one thread no matter how large it is. Ports are kept as bits, so even a full
+ * range only takes 8 KiB either way.
+ */
 public class PScanRunner {
-    public boolean running = true;
-    public int portsScanned = 0;
-    ExecutorService es;
-    List<Future<PortScannerManager.ScanResult>> futures = new ArrayList<>();
-    Thread runner;
-
-    public PScanRunner(InetAddress address, int threads, int threadDelay, int timeoutMS, Collection<Integer> ports,
-                       Consumer<List<PortScannerManager.ScanResult>> callback) {
-        runner = new Thread(() -> {
-            es = Executors.newFixedThreadPool(threads);
-            ports.forEach(port -> {
-                futures.add(isPortOpen(es, address.getHostAddress(), port, timeoutMS, threadDelay));
-            });
-            try {
-                es.awaitTermination(200L, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException ignored) {
-            }
-            List<PortScannerManager.ScanResult> results = new ArrayList<>();
-            for (Future<PortScannerManager.ScanResult> fsc : futures) {
-                try {
-                    results.add(fsc.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
-            }
-            callback.accept(results);
-        });
+    private static final long MAX_WAIT_MS = 100;
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(3);
+    public volatile boolean running = true;
+    public volatile int portsScanned = 0;
+    private final InetAddress address;
+    private final int window;
+    private final BitSet ports;
+    private final int total;
+    private final Listener listener;
+    private final BitSet open = new BitSet(65536);
+    private final ScanRateController rateController;
+    private final Thread runner;
+
+    /**
+     * @param window    how many connections may be pending at once
+     * @param timeoutMS the longest a connection attempt may take, the actual timeout adapts to the round trips seen
+     * @param ports     one bit per port to scan
+     */
+    public PScanRunner(InetAddress address, int window, int timeoutMS, BitSet ports, Listener listener) {
+        this.address = address;
+        this.window = window;
+        this.ports = ports;
+        this.total = ports.cardinality();
+        this.listener = listener;
+        // start at a full window per 100ms, backs off by itself if the target starts dropping
+        rateController = new ScanRateController(window * 10.0, window * 100.0, Math.min(timeoutMS, 50), timeoutMS);
+        runner = new Thread(this::scan, "Port Scanner");
+        runner.setDaemon(true);
         runner.start();
     }
 
     public void cancel() {
         running = false;
+        runner.interrupt();
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    private void scan() {
+        // lazily deleted, a probe that already finished just gets skipped
+        PriorityQueue<Probe> deadlines = new PriorityQueue<>(Comparator.comparingLong(p -> p.deadline));
+        int next = ports.nextSetBit(0);
+        int inFlight = 0;
+        long lastProgress = System.nanoTime();
+        int lastScanned = 0;
+
+        try (Selector selector = Selector.open()) {
+            while (running && (next >= 0 || inFlight > 0)) {
+                long now = System.nanoTime();
+                if (now - lastProgress >= PROGRESS_INTERVAL) {
+                    listener.onProgress(portsScanned, total, (portsScanned - lastScanned) * 1e9 / (now - lastProgress));
+                    lastProgress = now;
+                    lastScanned = portsScanned;
+                }
+
+                long nextStart = Long.MAX_VALUE;
+                while (inFlight < window && next >= 0) {
+                    long wait = rateController.reserve();
+                    if (wait > 0) {
+                        nextStart = now + wait;
+                        break;
+                    }
+                    Probe probe = open(selector, next);
+                    next = next < 65535 ? ports.nextSetBit(next + 1) : -1;
+                    if (probe.done) {
+                        report(probe);
+                    } else {
+                        deadlines.add(probe);
+                        inFlight++;
+                    }
+                }
+
+                while (!deadlines.isEmpty() && (deadlines.peek().done || deadlines.peek().deadline <= now)) {
+                    Probe probe = deadlines.poll();
+                    if (probe.done) continue;
+                    rateController.onTimeout();
+                    probe.finish(false);
+                    inFlight--;
+                }
+
+                long wakeUp = Math.min(nextStart, deadlines.isEmpty() ? Long.MAX_VALUE : deadlines.peek().deadline);
+                long waitMs = wakeUp == Long.MAX_VALUE ? MAX_WAIT_MS : Math.max(1, TimeUnit.NANOSECONDS.toMillis(wakeUp - now));
+                if (inFlight == 0) {
+                    try {
+                        Thread.sleep(waitMs);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    continue;
+                }
+                selector.select(waitMs);
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Probe probe = (Probe) key.attachment();
+                    long rtt = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probe.start);
+                    try {
+                        probe.channel.finishConnect();
+                        rateController.onResponse(rtt);
+                        probe.finish(true);
+                    } catch (ConnectException e) {
+                        // refused is still a round trip
+                        rateController.onResponse(rtt);
+                        probe.finish(false);
+                    } catch (IOException e) {
+                        rateController.onFailure();
+                        probe.finish(false);
+                    }
+                    report(probe);
+                    inFlight--;
+                }
+                selector.selectedKeys().clear();
+            }
+
+            // cancelled, whatever is still open counts as closed
+            for (Probe probe : deadlines) {
+                if (!probe.done) probe.finish(false);
+            }
+        } catch (IOException e) {
+            MeteorRejectsAddon.LOG.error("Port scan failed", e);
+        }
+
+        running = false;
+        listener.onFinished(open, portsScanned);
+    }
+
+    private void report(Probe probe) {
+        if (!probe.open) return;
+        open.set(probe.port);
+        listener.onOpen(probe.port);
     }
 
-    private Future<PortScannerManager.ScanResult> isPortOpen(ExecutorService es, String ip, int port, int timeout,
-                                                             int delay) {
-        return es.submit(() -> {
-            if (!running)
-                return new PortScannerManager.ScanResult(port, false);
-            Thread.sleep(delay);
-            portsScanned++;
-            try {
-                Socket socket = new Socket();
-                socket.connect(new InetSocketAddress(ip, port), timeout);
-                socket.close();
-                return new PortScannerManager.ScanResult(port, true);
-            } catch (Exception exc) {
-
-                return new PortScannerManager.ScanResult(port, false);
+    private Probe open(Selector selector, int port) {
+        Probe probe = new Probe(port, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rateController.getTimeoutMs()));
+        portsScanned++;
+        try {
+            probe.channel = SocketChannel.open();
+            probe.channel.configureBlocking(false);
+            if (probe.channel.connect(new InetSocketAddress(address, port))) {
+                probe.finish(true);
+            } else {
+                probe.channel.register(selector, SelectionKey.OP_CONNECT, probe);
             }
-        });
+        } catch (IOException e) {
+            rateController.onFailure();
+            probe.finish(false);
+        }
+        return probe;
+    }
+
+    private static class Probe {
+        private final int port;
+        private final long start = System.nanoTime();
+        private final long deadline;
+        private SocketChannel channel;
+        private boolean open;
+        private boolean done;
+
+        private Probe(int port, long deadline) {
+            this.port = port;
+            this.deadline = deadline;
+        }
+
+        private void finish(boolean open) {
+            this.open = open;
+            done = true;
+            if (channel != null) {
+                try {
+                    // also cancels the selection key
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Called from the scanner thread.
+     */
+    public interface Listener {
+        void onOpen(int port);
+
+        default void onProgress(int scanned, int total, double portsPerSecond) {}
+
+        /**
+         * @param open one bit per open port, also set when the scan was cancelled
+         */
+        void onFinished(BitSet open, int scanned);
     }
 }
@@ -13,33 +13,4 @@ public class PortScannerManager {
         }
         scans.clear();
     }
-
-    public static class ScanResult {
-        private int port;
-
-        private boolean isOpen;
-
-        public ScanResult(int port, boolean isOpen) {
-            super();
-            this.port = port;
-            this.isOpen = isOpen;
-        }
-
-        public int getPort() {
-            return port;
-        }
-
-        public void setPort(int port) {
-            this.port = port;
-        }
-
-        public boolean isOpen() {
-            return isOpen;
-        }
-
-        public void setOpen(boolean isOpen) {
-            this.isOpen = isOpen;
-        }
-
-    }
 }
@@ -0,0 +1,252 @@
+package anticope.rejects.utils.portscanner;
+
+import anticope.rejects.utils.server.MServerInfo;
+import anticope.rejects.utils.server.ServerProbe;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import net.minecraft.network.ClientConnection;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Works out what is listening on ports that a scan found open. Each port first gets a short
+ * wait for a banner, since ssh and ftp servers talk first, then an http HEAD on the same
+ * connection, and only then a Minecraft status ping. Bedrock servers are asked over udp.
+ */
+public class ServiceFingerprinter {
+    private static final int MAX_BYTES = 512;
+    private static final byte[] RAKNET_MAGIC = {
+        0x00, (byte) 0xFF, (byte) 0xFF, 0x00, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE,
+        (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, 0x12, 0x34, 0x56, 0x78
+    };
+
+    private final InetAddress address;
+    private final int maxInFlight;
+    private final int timeoutMs;
+    private final Bootstrap bootstrap;
+    private final ServerProbe statusProbe;
+
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    public ServiceFingerprinter(InetAddress address, int maxInFlight, int timeoutMs) {
+        this.address = address;
+        this.maxInFlight = maxInFlight;
+        this.timeoutMs = timeoutMs;
+        this.bootstrap = new Bootstrap()
+            .group(ClientConnection.CLIENT_IO_GROUP.get())
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeoutMs);
+        this.statusProbe = new ServerProbe(timeoutMs);
+    }
+
+    /**
+     * Fingerprints a tcp port, waits for a free slot if too many are running.
+     *
+     * @param callback called from a network thread with the service name, {@code null} if nothing was recognised
+     */
+    public void tcp(int port, Consumer<String> callback) {
+        submit(done -> readBanner(port, label -> {
+            if (label != null) done.accept(label);
+            else statusProbe.probe(new InetSocketAddress(address, port)).thenAccept(info -> done.accept(info != null ? describe(info) : null));
+        }), callback);
+    }
+
+    /**
+     * Sends a RakNet unconnected ping, the way Bedrock clients fill in their server list.
+     */
+    public void bedrock(int port, Consumer<String> callback) {
+        submit(done -> bootstrap.clone()
+            .channel(NioDatagramChannel.class)
+            .handler(new ChannelInitializer<>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new ReadTimeoutHandler(timeoutMs, TimeUnit.MILLISECONDS));
+                    ch.pipeline().addLast(new BedrockHandler(new InetSocketAddress(address, port), done));
+                }
+            }).bind(0).addListener(f -> {
+                if (!f.isSuccess()) done.accept(null);
+            }), callback);
+    }
+
+    private void submit(Consumer<Consumer<String>> task, Consumer<String> callback) {
+        Runnable run = () -> task.accept(label -> {
+            callback.accept(label);
+            release();
+        });
+
+        synchronized (queue) {
+            if (inFlight >= maxInFlight) {
+                queue.add(run);
+                return;
+            }
+            inFlight++;
+        }
+        run.run();
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (queue) {
+            next = queue.poll();
+            if (next == null) inFlight--;
+        }
+        // hop onto the event loop so results that come back right away can't recurse
+        if (next != null) bootstrap.config().group().execute(next);
+    }
+
+    private void readBanner(int port, Consumer<String> callback) {
+        bootstrap.clone()
+            .channel(NioSocketChannel.class)
+            .handler(new ChannelInitializer<>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new ReadTimeoutHandler(timeoutMs, TimeUnit.MILLISECONDS));
+                    ch.pipeline().addLast(new BannerHandler(port, callback));
+                }
+            }).connect(address, port).addListener(f -> {
+                if (!f.isSuccess()) callback.accept(null);
+            });
+    }
+
+    private static String describe(MServerInfo info) {
+        return "Java Server (" + info.version + ", " + info.playerCount + "/" + info.playercountMax + ")";
+    }
+
+    private static String firstLine(String text) {
+        int end = text.indexOf('\n');
+        return (end < 0 ? text : text.substring(0, end)).trim();
+    }
+
+    // labels from what the service said first, or from its answer to a HEAD request
+    private static String classify(String response, boolean afterHead) {
+        String line = firstLine(response);
+        if (line.startsWith("SSH-")) return "SSH (" + line.substring(4) + ")";
+        if (line.startsWith("HTTP/")) {
+            for (String header : response.split("\r?\n")) {
+                if (header.regionMatches(true, 0, "Server:", 0, 7)) return "HTTP (" + header.substring(7).trim() + ")";
+            }
+            return "HTTP";
+        }
+        if (line.startsWith("220")) return line.toLowerCase().contains("ftp") ? "FTP (" + line.substring(3).trim() + ")" : "Banner (" + line + ")";
+        if (line.startsWith("* OK")) return "IMAP";
+        if (line.startsWith("+OK")) return "POP3";
+        // mysql greets with a binary packet that carries its version as text
+        if (!afterHead && response.length() > 5 && response.charAt(4) == 10) return "MySQL (" + response.substring(5).split("\0")[0] + ")";
+        return null;
+    }
+
+    private class BannerHandler extends ChannelInboundHandlerAdapter {
+        // servers that speak first usually do it right away
+        private final int bannerWaitMs = Math.max(100, timeoutMs / 4);
+        private final int port;
+        private final Consumer<String> callback;
+        private final StringBuilder response = new StringBuilder();
+        private boolean sentHead;
+        private boolean done;
+
+        private BannerHandler(int port, Consumer<String> callback) {
+            this.port = port;
+            this.callback = callback;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.executor().schedule(() -> {
+                if (done || response.length() > 0) return;
+                sentHead = true;
+                String head = "HEAD / HTTP/1.0\r\nHost: " + address.getHostAddress() + ":" + port + "\r\nConnection: close\r\n\r\n";
+                ctx.writeAndFlush(ctx.alloc().buffer().writeBytes(head.getBytes(StandardCharsets.US_ASCII)));
+            }, bannerWaitMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf in = (ByteBuf) msg;
+            response.append(in.toString(StandardCharsets.ISO_8859_1));
+            in.release();
+            // the status line and headers are enough, banners are one line
+            if (response.length() >= MAX_BYTES || response.indexOf(sentHead ? "\r\n\r\n" : "\n") >= 0) finish(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            finish(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            finish(ctx);
+        }
+
+        private void finish(ChannelHandlerContext ctx) {
+            if (done) return;
+            done = true;
+            ctx.close();
+            callback.accept(response.isEmpty() ? null : classify(response.toString(), sentHead));
+        }
+    }
+
+    private static class BedrockHandler extends ChannelInboundHandlerAdapter {
+        private final InetSocketAddress target;
+        private final Consumer<String> callback;
+        private boolean done;
+
+        private BedrockHandler(InetSocketAddress target, Consumer<String> callback) {
+            this.target = target;
+            this.callback = callback;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ByteBuf out = ctx.alloc().buffer(33);
+            out.writeByte(0x01);
+            out.writeLong(System.currentTimeMillis());
+            out.writeBytes(RAKNET_MAGIC);
+            out.writeLong(ThreadLocalRandom.current().nextLong());
+            ctx.writeAndFlush(new DatagramPacket(out, target));
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            DatagramPacket packet = (DatagramPacket) msg;
+            ByteBuf in = packet.content();
+            String label = null;
+            // id, time, server guid, magic, then the length prefixed status string
+            if (in.readableBytes() > 35 && in.getUnsignedByte(0) == 0x1C) {
+                int length = in.getUnsignedShort(33);
+                if (in.readableBytes() >= 35 + length) {
+                    // MCPE;motd;protocol;version;players;max;...
+                    String[] fields = in.toString(35, length, StandardCharsets.UTF_8).split(";");
+                    label = fields.length >= 6
+                        ? "Bedrock Server (" + fields[3] + ", " + fields[4] + "/" + fields[5] + ")"
+                        : "Bedrock Server";
+                }
+            }
+            packet.release();
+            finish(ctx, label);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            finish(ctx, null);
+        }
+
+        private void finish(ChannelHandlerContext ctx, String label) {
+            if (done) return;
+            done = true;
+            ctx.close();
+            callback.accept(label);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package anticope.rejects.utils.server;
+
+import com.google.common.net.InetAddresses;
+import net.minecraft.client.network.Address;
+import net.minecraft.client.network.AllowedAddressResolver;
+import net.minecraft.client.network.ServerAddress;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves host names and server addresses off the calling thread and remembers the answers,
+ * failed lookups included. Literal IPs never reach the resolver.
+ * <p>
+ * Java doesn't expose record TTLs, so entries live as long as the JVM's own
+ * {@code networkaddress.cache.ttl} and {@code networkaddress.cache.negative.ttl} say.
+ */
+public class DnsCache {
+    private static final long TTL = readTtl("networkaddress.cache.ttl", 30);
+    private static final long NEGATIVE_TTL = readTtl("networkaddress.cache.negative.ttl", 10);
+    private static final AtomicInteger threadNumber = new AtomicInteger(0);
+    private static final ExecutorService executor = Executors.newFixedThreadPool(4, task -> {
+        Thread thread = new Thread(task, "Rejects DNS #" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<InetSocketAddress>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Looks up a plain host name. Fails with an {@link UnknownHostException} if it doesn't resolve.
+     */
+    public static CompletableFuture<InetAddress> resolveHost(String host) {
+        String trimmed = host.trim();
+        if (InetAddresses.isInetAddress(trimmed)) return CompletableFuture.completedFuture(InetAddresses.forString(trimmed));
+        return lookup("host:" + trimmed.toLowerCase(Locale.ROOT), () -> new InetSocketAddress(InetAddress.getByName(trimmed), 0))
+            .thenApply(InetSocketAddress::getAddress);
+    }
+
+    /**
+     * Looks up an address from the server list the way the game does, following SRV records
+     * and honouring the server block list.
+     */
+    public static CompletableFuture<InetSocketAddress> resolveServer(String address) {
+        ServerAddress parsed = ServerAddress.parse(address.trim());
+        if (InetAddresses.isInetAddress(parsed.getAddress())) {
+            return CompletableFuture.completedFuture(new InetSocketAddress(InetAddresses.forString(parsed.getAddress()), parsed.getPort()));
+        }
+        return lookup("server:" + parsed.getAddress().toLowerCase(Locale.ROOT) + ":" + parsed.getPort(), () -> AllowedAddressResolver.DEFAULT.resolve(parsed)
+            .map(Address::getInetSocketAddress)
+            .orElseThrow(() -> new UnknownHostException(address)));
+    }
+
+    /**
+     * Resolves every server address at once, duplicates only cost one lookup. Addresses that
+     * don't resolve are left out of the map.
+     */
+    public static CompletableFuture<Map<String, InetSocketAddress>> resolveAll(Collection<String> addresses) {
+        Map<String, CompletableFuture<InetSocketAddress>> lookups = new LinkedHashMap<>();
+        for (String address : addresses) lookups.computeIfAbsent(address, DnsCache::resolveServer);
+
+        return CompletableFuture.allOf(lookups.values().stream()
+                .map(f -> f.handle((a, e) -> null))
+                .toArray(CompletableFuture[]::new))
+            .thenApply(v -> {
+                Map<String, InetSocketAddress> resolved = new LinkedHashMap<>();
+                lookups.forEach((address, future) -> {
+                    if (!future.isCompletedExceptionally()) resolved.put(address, future.join());
+                });
+                return resolved;
+            });
+    }
+
+    /**
+     * Blocking lookup for code that already runs off the client thread, still goes through the cache.
+     */
+    public static InetAddress getByName(String host) throws UnknownHostException {
+        try {
+            return resolveHost(host).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UnknownHostException unknown) throw unknown;
+            throw new UnknownHostException(host);
+        }
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+
+    private static CompletableFuture<InetSocketAddress> lookup(String key, Lookup lookup) {
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expires() > System.currentTimeMillis()) {
+            return entry.address() != null
+                ? CompletableFuture.completedFuture(entry.address())
+                : CompletableFuture.failedFuture(new UnknownHostException(key.substring(key.indexOf(':') + 1)));
+        }
+
+        // concurrent requests for the same name share one lookup
+        return pending.computeIfAbsent(key, k -> {
+            CompletableFuture<InetSocketAddress> future = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    InetSocketAddress address = lookup.resolve();
+                    cache.put(key, new Entry(address, System.currentTimeMillis() + TTL));
+                    pending.remove(key);
+                    future.complete(address);
+                } catch (Exception e) {
+                    cache.put(key, new Entry(null, System.currentTimeMillis() + NEGATIVE_TTL));
+                    pending.remove(key);
+                    future.completeExceptionally(e instanceof UnknownHostException ? e : new UnknownHostException(e.getMessage()));
+                }
+            });
+            return future;
+        });
+    }
+
+    private static long readTtl(String property, long fallbackSeconds) {
+        long seconds = fallbackSeconds;
+        try {
+            String value = Security.getProperty(property);
+            if (value != null) seconds = Long.parseLong(value.trim());
+        } catch (NumberFormatException | SecurityException ignored) {
+        }
+        // negative means forever in the jvm, a day is plenty for a client
+        return TimeUnit.SECONDS.toMillis(seconds < 0 ? TimeUnit.DAYS.toSeconds(1) : seconds);
+    }
+
+    private interface Lookup {
+        InetSocketAddress resolve() throws Exception;
+    }
+
+    private record Entry(InetSocketAddress address, long expires) {}
+}
@@ -1,6 +1,16 @@
 package anticope.rejects.utils.server;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
 public class IPAddress {
+    private static final int MAX_LINE = 64;
+
     private final int[] octets;
     private final int port;
 
@@ -45,6 +55,112 @@ public class IPAddress {
         return new IPAddress(octets, port);
     }
 
+    /**
+     * Packs an "a.b.c.d[:port]" address into the low 48 bits of a long, the ip above the port.
+     * Anything after the first whitespace is ignored.
+     *
+     * @return the packed address, or -1 if it isn't a valid IPv4 address
+     */
+    public static long pack(CharSequence text) {
+        byte[] bytes = new byte[Math.min(text.length(), MAX_LINE)];
+        for (int i = 0; i < bytes.length; i++) {
+            char c = text.charAt(i);
+            bytes[i] = c < 128 ? (byte) c : (byte) '?';
+        }
+        return pack(bytes, 0, bytes.length);
+    }
+
+    private static long pack(byte[] bytes, int start, int end) {
+        while (start < end && Character.isWhitespace(bytes[start])) start++;
+        long ip = 0;
+        int octets = 0, value = -1, port = -1;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b == ' ' || b == '\t' || b == '\r') break;
+            if (b >= '0' && b <= '9') {
+                if (port >= 0) {
+                    port = port * 10 + (b - '0');
+                    if (port > 65535) return -1;
+                } else {
+                    value = (value < 0 ? 0 : value * 10) + (b - '0');
+                    if (value > 255) return -1;
+                }
+            } else if (b == '.' && port < 0 && value >= 0 && octets < 3) {
+                ip = ip << 8 | value;
+                octets++;
+                value = -1;
+            } else if (b == ':' && port < 0 && value >= 0 && octets == 3) {
+                port = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (octets != 3 || value < 0) return -1;
+        ip = ip << 8 | value;
+        return ip << 16 | (port < 0 ? 25565 : port);
+    }
+
+    public static String toString(long packed) {
+        long ip = packed >>> 16;
+        return (ip >>> 24 & 0xFF) + "." + (ip >>> 16 & 0xFF) + "." + (ip >>> 8 & 0xFF) + "." + (ip & 0xFF) + ":" + (packed & 0xFFFF);
+    }
+
+    /**
+     * Streams the file through a fixed buffer and hands every valid address line to the consumer,
+     * without building a string per line.
+     */
+    public static void readPacked(Path path, LongConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            byte[] line = new byte[MAX_LINE];
+            int length = 0;
+            while (channel.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                if (!buffer.hasRemaining()) break;
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        long packed = pack(line, 0, length);
+                        if (packed >= 0) consumer.accept(packed);
+                        length = 0;
+                    } else if (length < MAX_LINE) {
+                        line[length++] = b;
+                    }
+                }
+                buffer.clear();
+            }
+            long packed = pack(line, 0, length);
+            if (packed >= 0) consumer.accept(packed);
+        }
+    }
+
+    /**
+     * Appends the addresses one per line, starting a new line first if the file doesn't end with one.
+     */
+    public static void appendPacked(Path path, long[] addresses) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            channel.position(size);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            if (size > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, size - 1);
+                if (last.get(0) != '\n') buffer.put((byte) '\n');
+            }
+            for (long packed : addresses) {
+                byte[] bytes = (toString(packed) + "\n").getBytes(StandardCharsets.US_ASCII);
+                if (buffer.remaining() < bytes.length) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    buffer.clear();
+                }
+                buffer.put(bytes);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof IPAddress other))
@@ -1,7 +0,0 @@
-package anticope.rejects.utils.server;
-
-public interface IServerFinderDisconnectListener {
-    void onServerDisconnect();
-
-    void onServerFailed();
-}
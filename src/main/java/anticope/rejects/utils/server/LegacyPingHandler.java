@@ -0,0 +1,126 @@
+package anticope.rejects.utils.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * The server list ping servers used before the netty rewrite. The 1.6 form is answered by
+ * 1.4 to 1.6 servers, anything older only understands the bare {@code 0xFE} request.
+ */
+public class LegacyPingHandler extends ChannelInboundHandlerAdapter {
+    // 1.6.4, servers only use it to pick the reply format
+    private static final int PROTOCOL = 78;
+
+    private final InetSocketAddress address;
+    private final boolean beta;
+    private final Consumer<MServerInfo> callback;
+    private final long startTime = System.nanoTime();
+    private ByteBuf buffer;
+    private boolean done;
+
+    /**
+     * @param beta send the pre 1.4 request instead of the 1.6 one
+     */
+    public LegacyPingHandler(InetSocketAddress address, boolean beta, Consumer<MServerInfo> callback) {
+        this.address = address;
+        this.beta = beta;
+        this.callback = callback;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        ByteBuf out = ctx.alloc().buffer();
+        out.writeByte(0xFE);
+        if (!beta) {
+            byte[] channel = "MC|PingHost".getBytes(StandardCharsets.UTF_16BE);
+            byte[] host = address.getHostString().getBytes(StandardCharsets.UTF_16BE);
+            out.writeByte(0x01);
+            out.writeByte(0xFA);
+            out.writeShort(channel.length / 2);
+            out.writeBytes(channel);
+            out.writeShort(7 + host.length);
+            out.writeByte(PROTOCOL);
+            out.writeShort(host.length / 2);
+            out.writeBytes(host);
+            out.writeInt(address.getPort());
+        }
+        ctx.writeAndFlush(out, ctx.voidPromise());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ByteBuf in = (ByteBuf) msg;
+        if (buffer == null) buffer = ctx.alloc().buffer();
+        buffer.writeBytes(in);
+        in.release();
+
+        if (buffer.readableBytes() < 3) return;
+        if (buffer.getUnsignedByte(0) != 0xFF) {
+            finish(ctx, null);
+            return;
+        }
+        int length = buffer.getUnsignedShort(1) * 2;
+        if (buffer.readableBytes() < 3 + length) return;
+
+        String response = buffer.toString(3, length, StandardCharsets.UTF_16BE);
+        MServerInfo info;
+        try {
+            info = parse(response);
+        } catch (RuntimeException e) {
+            info = null;
+        }
+        finish(ctx, info);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        finish(ctx, null);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        finish(ctx, null);
+    }
+
+    private void finish(ChannelHandlerContext ctx, MServerInfo info) {
+        if (done) return;
+        done = true;
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        ctx.close();
+        callback.accept(info);
+    }
+
+    private MServerInfo parse(String response) {
+        MServerInfo info = new MServerInfo("", address.getHostString() + ":" + address.getPort());
+        info.ping = (System.nanoTime() - startTime) / 1_000_000L;
+
+        if (response.startsWith("§1\0")) {
+            // §1, protocol, version, motd, online, max
+            String[] fields = response.split("\0");
+            info.protocolVersion = Integer.parseInt(fields[1]);
+            info.version = fields[2];
+            info.label = fields[3];
+            info.playerCount = Integer.parseInt(fields[4]);
+            info.playercountMax = Integer.parseInt(fields[5]);
+        } else {
+            // motd§online§max, the motd itself can't contain §
+            String[] fields = response.split("§");
+            if (fields.length < 3) return null;
+            info.protocolVersion = 0;
+            info.version = "Beta 1.8 - 1.3";
+            info.label = fields[0];
+            info.playerCount = Integer.parseInt(fields[fields.length - 2]);
+            info.playercountMax = Integer.parseInt(fields[fields.length - 1]);
+        }
+        info.playerCountLabel = info.playerCount + "/" + info.playercountMax;
+        return info;
+    }
+}
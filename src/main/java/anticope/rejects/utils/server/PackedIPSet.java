@@ -0,0 +1,69 @@
+package anticope.rejects.utils.server;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Open addressing hash set of addresses packed by {@link IPAddress#pack}, eight bytes a slot
+ * instead of a boxed object per address.
+ */
+public class PackedIPSet {
+    private static final long EMPTY = -1;
+
+    private long[] slots;
+    private int size;
+
+    public PackedIPSet() {
+        this(64);
+    }
+
+    public PackedIPSet(int expected) {
+        slots = new long[Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * @return whether the address wasn't in the set yet
+     */
+    public boolean add(long packed) {
+        if (packed < 0) throw new IllegalArgumentException("Not a packed address: " + packed);
+        if (size * 2 >= slots.length) grow();
+        int i = find(slots, packed);
+        if (slots[i] == packed) return false;
+        slots[i] = packed;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long packed) {
+        return packed >= 0 && slots[find(slots, packed)] == packed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long slot : slots) {
+            if (slot != EMPTY) action.accept(slot);
+        }
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        for (long slot : old) {
+            if (slot != EMPTY) slots[find(slots, slot)] = slot;
+        }
+    }
+
+    // linear probing, the hash spreads neighbouring addresses over the whole table
+    private static int find(long[] slots, long packed) {
+        int mask = slots.length - 1;
+        long hash = packed * 0x9E3779B97F4A7C15L;
+        int i = (int) (hash ^ hash >>> 32) & mask;
+        while (slots[i] != EMPTY && slots[i] != packed) i = (i + 1) & mask;
+        return i;
+    }
+}
@@ -0,0 +1,48 @@
+package anticope.rejects.utils.server;
+
+import anticope.rejects.utils.RejectsConfig;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking ping work either on a new platform thread per task, like the pingers always
+ * did, or on virtual threads with at most {@code maxThreads} of them working at once.
+ */
+public class PingExecutor {
+    private static final AtomicInteger threadNumber = new AtomicInteger(0);
+    private static final ExecutorService VIRTUAL = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Virtual Server Pinger #", 0).factory());
+
+    private final boolean virtual;
+    private final Semaphore permits;
+
+    public PingExecutor(int maxThreads) {
+        this(RejectsConfig.get().virtualThreadPings, maxThreads);
+    }
+
+    public PingExecutor(boolean virtual, int maxThreads) {
+        this.virtual = virtual;
+        this.permits = new Semaphore(Math.max(1, maxThreads));
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public void execute(Runnable task) {
+        if (!virtual) {
+            new Thread(task, "Server Pinger #" + threadNumber.incrementAndGet()).start();
+            return;
+        }
+        VIRTUAL.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+}
@@ -0,0 +1,276 @@
+package anticope.rejects.utils.server;
+
+import anticope.rejects.MeteorRejectsAddon;
+import meteordevelopment.meteorclient.MeteorClient;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Remembers the outcome of every discovery probe, keyed by the packed address and port, so
+ * repeated sweeps can leave out hosts that recently didn't answer. Outcomes live in an open
+ * addressing table with one primitive array per field, like {@link PackedIPSet}, so a dead host
+ * costs a couple dozen bytes. Only hosts that answered at some point also keep what they reported.
+ */
+public class ScanDatabase {
+    private static final int MAGIC = 0x52534442;
+    private static final int FORMAT = 1;
+    private static final long EMPTY = -1;
+    public static final long DEAD_TTL = TimeUnit.HOURS.toMillis(24);
+    /**
+     * Dead hosts kept at most, the oldest failures are dropped first. A few /16 sweeps fit.
+     */
+    public static final int MAX_DEAD = 200_000;
+
+    private static ScanDatabase INSTANCE;
+
+    private final File file;
+    private long[] keys;
+    private long[] lastSeen;
+    private int[] rtt;
+    private int[] players;
+    private boolean[] alive;
+    private int size;
+    private int dead;
+    // version, protocol and slots of every host that ever answered, far fewer than the dead ones
+    private final Map<Long, Reported> reported = new HashMap<>();
+    private boolean dirty;
+
+    ScanDatabase(File file) {
+        this.file = file;
+        allocate(1024);
+        load();
+    }
+
+    public static synchronized ScanDatabase get() {
+        if (INSTANCE == null) INSTANCE = new ScanDatabase(new File(MeteorClient.FOLDER, "rejects-scans.bin"));
+        return INSTANCE;
+    }
+
+    /**
+     * @return the ip in the high bits and the port in the low 16, or -1 for anything but IPv4
+     */
+    public static long pack(InetSocketAddress address) {
+        if (address.getAddress() == null) return -1;
+        byte[] bytes = address.getAddress().getAddress();
+        if (bytes.length != 4) return -1;
+        long ip = (bytes[0] & 0xFFL) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
+        return ip << 16 | address.getPort();
+    }
+
+    /**
+     * Whether the address is worth probing again: never seen, answered last time, or its
+     * failure is older than the ttl.
+     */
+    public synchronized boolean shouldProbe(InetSocketAddress address, long ttl) {
+        long key = pack(address);
+        if (key < 0) return true;
+        int i = find(keys, key);
+        return keys[i] == EMPTY || alive[i] || System.currentTimeMillis() - lastSeen[i] > ttl;
+    }
+
+    public synchronized void recordResponse(InetSocketAddress address, MServerInfo info) {
+        long key = pack(address);
+        if (key < 0) return;
+        put(key, System.currentTimeMillis(), true, (int) info.ping, info.playerCount);
+        reported.put(key, new Reported(info.version, info.protocolVersion, info.playercountMax));
+        dirty = true;
+    }
+
+    public synchronized void recordFailure(InetSocketAddress address) {
+        long key = pack(address);
+        if (key < 0) return;
+        // keep what a server last reported, it may just be restarting
+        int i = find(keys, key);
+        if (keys[i] == EMPTY) put(key, System.currentTimeMillis(), false, 0, 0);
+        else put(key, System.currentTimeMillis(), false, rtt[i], players[i]);
+        if (dead > MAX_DEAD) prune();
+        dirty = true;
+    }
+
+    public synchronized Optional<Result> get(InetSocketAddress address) {
+        long key = pack(address);
+        if (key < 0) return Optional.empty();
+        int i = find(keys, key);
+        return keys[i] == EMPTY ? Optional.empty() : Optional.of(result(i));
+    }
+
+    /**
+     * Addresses of every server that answered its last probe and matches the filter.
+     */
+    public synchronized List<String> getAlive(Predicate<Result> filter) {
+        List<String> found = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && alive[i] && filter.test(result(i))) found.add(IPAddress.toString(keys[i]));
+        }
+        return found;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        allocate(1024);
+        reported.clear();
+        dirty = true;
+    }
+
+    private Result result(int i) {
+        Reported r = reported.get(keys[i]);
+        return r != null
+            ? new Result(lastSeen[i], alive[i], r.version(), r.protocol(), players[i], r.maxPlayers(), rtt[i])
+            : new Result(lastSeen[i], alive[i], null, 0, players[i], 0, rtt[i]);
+    }
+
+    private void put(long key, long seen, boolean up, int rttMs, int playerCount) {
+        if (size * 2 >= keys.length) rehash(keys.length * 2, Long.MIN_VALUE, 0);
+        int i = find(keys, key);
+        if (keys[i] == EMPTY) {
+            keys[i] = key;
+            size++;
+        } else if (!alive[i]) {
+            dead--;
+        }
+        if (!up) dead++;
+        lastSeen[i] = seen;
+        alive[i] = up;
+        rtt[i] = rttMs;
+        players[i] = playerCount;
+    }
+
+    // drops the oldest failures until a quarter of the room is free again, so it doesn't run on every probe
+    private void prune() {
+        long[] seen = new long[dead];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && !alive[i]) seen[n++] = lastSeen[i];
+        }
+        Arrays.sort(seen);
+        int drop = dead - MAX_DEAD * 3 / 4;
+        long cutoff = seen[drop - 1];
+        // failures recorded in the same millisecond tie, only as many of those go as are needed
+        int older = drop - 1;
+        while (older > 0 && seen[older - 1] == cutoff) older--;
+        rehash(keys.length, cutoff, drop - older);
+    }
+
+    // moves everything into tables of the given length, leaving out dead hosts last seen before
+    // the cutoff and the first few last seen right at it
+    private void rehash(int length, long deadCutoff, int tiesToDrop) {
+        long[] oldKeys = keys, oldSeen = lastSeen;
+        int[] oldRtt = rtt, oldPlayers = players;
+        boolean[] oldAlive = alive;
+        allocate(length);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            if (!oldAlive[j] && (oldSeen[j] < deadCutoff || oldSeen[j] == deadCutoff && tiesToDrop-- > 0)) {
+                reported.remove(oldKeys[j]);
+                continue;
+            }
+            int i = find(keys, oldKeys[j]);
+            keys[i] = oldKeys[j];
+            lastSeen[i] = oldSeen[j];
+            rtt[i] = oldRtt[j];
+            players[i] = oldPlayers[j];
+            alive[i] = oldAlive[j];
+            size++;
+            if (!oldAlive[j]) dead++;
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        Arrays.fill(keys, EMPTY);
+        lastSeen = new long[length];
+        rtt = new int[length];
+        players = new int[length];
+        alive = new boolean[length];
+        size = 0;
+        dead = 0;
+    }
+
+    // linear probing, the hash spreads neighbouring addresses over the whole table
+    private static int find(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int i = (int) (hash ^ hash >>> 32) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private synchronized void load() {
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = in.readLong();
+                long seen = in.readLong();
+                boolean up = in.readBoolean();
+                String version = in.readBoolean() ? in.readUTF() : null;
+                int protocol = in.readInt();
+                int playerCount = in.readInt();
+                int maxPlayers = in.readInt();
+                put(key, seen, up, in.readInt(), playerCount);
+                if (version != null) reported.put(key, new Reported(version, protocol, maxPlayers));
+            }
+            if (dead > MAX_DEAD) prune();
+        } catch (IOException e) {
+            MeteorRejectsAddon.LOG.error("Failed to load scan results", e);
+        }
+    }
+
+    /**
+     * Writes the results if anything changed, through a temporary file so a crash can't leave half a database.
+     */
+    public void save() {
+        Snapshot snapshot;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            // the arrays are copied in bulk and written outside the lock, so probes keep recording meanwhile
+            snapshot = new Snapshot(keys.clone(), lastSeen.clone(), rtt.clone(), players.clone(), alive.clone(), size, new HashMap<>(reported));
+        }
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(snapshot.size());
+                for (int i = 0; i < snapshot.keys().length; i++) {
+                    long key = snapshot.keys()[i];
+                    if (key == EMPTY) continue;
+                    Reported r = snapshot.reported().get(key);
+                    out.writeLong(key);
+                    out.writeLong(snapshot.lastSeen()[i]);
+                    out.writeBoolean(snapshot.alive()[i]);
+                    out.writeBoolean(r != null && r.version() != null);
+                    if (r != null && r.version() != null) out.writeUTF(r.version());
+                    out.writeInt(r != null ? r.protocol() : 0);
+                    out.writeInt(snapshot.players()[i]);
+                    out.writeInt(r != null ? r.maxPlayers() : 0);
+                    out.writeInt(snapshot.rtt()[i]);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            MeteorRejectsAddon.LOG.error("Failed to save scan results", e);
+        }
+    }
+
+    public record Result(long lastSeen, boolean alive, String version, int protocol, int players, int maxPlayers, int rtt) {}
+
+    private record Reported(String version, int protocol, int maxPlayers) {}
+
+    private record Snapshot(long[] keys, long[] lastSeen, int[] rtt, int[] players, boolean[] alive, int size, Map<Long, Reported> reported) {}
+}
@@ -0,0 +1,156 @@
+package anticope.rejects.utils.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one scan, cheap enough to bump from every network thread at once. Call
+ * {@link #sample()} about once a second to keep the rate and the timeline up to date.
+ */
+public class ScanMetrics {
+    /**
+     * Upper bounds of the round trip histogram buckets in milliseconds, anything slower goes in one more bucket.
+     */
+    public static final int[] RTT_BUCKETS = {25, 50, 100, 200, 400, 800, 1600, 3200};
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder[] rtts = new LongAdder[RTT_BUCKETS.length + 1];
+
+    private final long startTime = System.nanoTime();
+    private final List<long[]> timeline = new ArrayList<>();
+    private long lastSampleTime = startTime;
+    private long lastStarted;
+    private volatile double probesPerSecond;
+
+    public ScanMetrics() {
+        for (int i = 0; i < rtts.length; i++) rtts[i] = new LongAdder();
+    }
+
+    public void onStart() {
+        started.increment();
+        inFlight.increment();
+    }
+
+    public void onResponse(long rttMs) {
+        responses.increment();
+        inFlight.decrement();
+        int bucket = 0;
+        while (bucket < RTT_BUCKETS.length && rttMs > RTT_BUCKETS[bucket]) bucket++;
+        rtts[bucket].increment();
+    }
+
+    public void onTimeout() {
+        timeouts.increment();
+        inFlight.decrement();
+    }
+
+    public void onRefused() {
+        refused.increment();
+        inFlight.decrement();
+    }
+
+    /**
+     * Anything else, including hosts that accepted the connection but never sent a status.
+     */
+    public void onFailure() {
+        failures.increment();
+        inFlight.decrement();
+    }
+
+    /**
+     * Counts the failure under what {@link ServerProbe} said went wrong, {@code null} counts as anything else.
+     */
+    public void onFailure(ServerProbe.Failure failure) {
+        if (failure == ServerProbe.Failure.Timeout) onTimeout();
+        else if (failure == ServerProbe.Failure.Refused) onRefused();
+        else onFailure();
+    }
+
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long total = started.sum();
+        double seconds = (now - lastSampleTime) / 1e9;
+        if (seconds > 0) probesPerSecond = (total - lastStarted) / seconds;
+        lastSampleTime = now;
+        lastStarted = total;
+        timeline.add(new long[]{
+            TimeUnit.NANOSECONDS.toSeconds(now - startTime), total, responses.sum(), timeouts.sum(),
+            refused.sum(), failures.sum(), inFlight.sum(), Math.round(probesPerSecond)
+        });
+    }
+
+    public long getStarted() {
+        return started.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getResponses() {
+        return responses.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getRefused() {
+        return refused.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getProbesPerSecond() {
+        return probesPerSecond;
+    }
+
+    public long[] getRttHistogram() {
+        long[] histogram = new long[rtts.length];
+        for (int i = 0; i < rtts.length; i++) histogram[i] = rtts[i].sum();
+        return histogram;
+    }
+
+    public static String bucketName(int bucket) {
+        return bucket < RTT_BUCKETS.length ? "<" + RTT_BUCKETS[bucket] + "ms" : ">" + RTT_BUCKETS[RTT_BUCKETS.length - 1] + "ms";
+    }
+
+    /**
+     * Writes {@code <name>.csv} with the per second timeline and {@code <name>-rtt.csv} with the histogram.
+     */
+    public synchronized void writeCsv(File dir, String name) throws IOException {
+        sample();
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+
+        try (PrintWriter out = new PrintWriter(new File(dir, name + ".csv"), StandardCharsets.UTF_8)) {
+            out.println("seconds,probes,responses,timeouts,refused,failures,in_flight,probes_per_second");
+            for (long[] row : timeline) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) sb.append(',');
+                    sb.append(row[i]);
+                }
+                out.println(sb);
+            }
+        }
+
+        long[] histogram = getRttHistogram();
+        try (PrintWriter out = new PrintWriter(new File(dir, name + "-rtt.csv"), StandardCharsets.UTF_8)) {
+            out.println("bucket,count");
+            for (int i = 0; i < histogram.length; i++) out.println(bucketName(i) + "," + histogram[i]);
+        }
+    }
+}
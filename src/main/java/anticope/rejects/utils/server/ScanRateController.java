@@ -0,0 +1,129 @@
+package anticope.rejects.utils.server;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces probes with a token bucket and picks connect timeouts from the round trips seen so
+ * far. The rate grows by a fixed step every second and halves whenever the share of timeouts
+ * jumps above its usual level, the same way tcp backs off when the line is congested.
+ */
+public class ScanRateController {
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 16;
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_WINDOW_PROBES = 20;
+    // how far above the running timeout ratio a window has to be to count as a spike
+    private static final double SPIKE = 0.15;
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increase;
+    private final int minTimeoutMs;
+    private final int maxTimeoutMs;
+
+    private final int[] rtts = new int[SAMPLES];
+    private int rttCount;
+    private volatile int timeoutMs;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private long windowStart = System.nanoTime();
+    private int windowProbes;
+    private int windowTimeouts;
+    private double baseline = -1;
+
+    /**
+     * @param rate    probes per second to start at, also the additive step is a tenth of it
+     * @param maxRate the rate never grows past this
+     */
+    public ScanRateController(double rate, double maxRate, int minTimeoutMs, int maxTimeoutMs) {
+        this.rate = rate;
+        this.minRate = Math.max(1, rate / 16);
+        this.maxRate = Math.max(rate, maxRate);
+        this.increase = Math.max(1, rate / 10);
+        this.minTimeoutMs = minTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+        this.timeoutMs = maxTimeoutMs;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return 0 if the probe may go now, otherwise how many nanoseconds to wait before asking again
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        // a tenth of a second worth of burst, enough to keep a few connections in flight
+        tokens = Math.min(Math.max(1, rate / 10), tokens + (now - lastRefill) * rate / 1e9);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) ((1 - tokens) * 1e9 / rate) + 1;
+    }
+
+    /**
+     * Blocks the calling thread until a probe may go.
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = reserve()) > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * The host answered, even if only to refuse the connection.
+     */
+    public synchronized void onResponse(long rttMs) {
+        rtts[rttCount++ % SAMPLES] = (int) Math.min(Integer.MAX_VALUE, rttMs);
+        if (rttCount >= MIN_SAMPLES && rttCount % MIN_SAMPLES == 0) updateTimeout();
+        count(false);
+    }
+
+    public synchronized void onTimeout() {
+        count(true);
+    }
+
+    public synchronized void onFailure() {
+        count(false);
+    }
+
+    public int getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    // three times the 99th percentile leaves room for jitter without waiting on hosts that are gone
+    private void updateTimeout() {
+        int[] sorted = Arrays.copyOf(rtts, Math.min(rttCount, SAMPLES));
+        Arrays.sort(sorted);
+        int p99 = sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))];
+        timeoutMs = Math.max(minTimeoutMs, Math.min(maxTimeoutMs, p99 * 3));
+    }
+
+    private void count(boolean timeout) {
+        windowProbes++;
+        if (timeout) windowTimeouts++;
+
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW || windowProbes < MIN_WINDOW_PROBES) return;
+        double ratio = (double) windowTimeouts / windowProbes;
+        if (baseline < 0) {
+            baseline = ratio;
+        } else if (ratio > baseline + SPIKE) {
+            rate = Math.max(minRate, rate / 2);
+        } else {
+            rate = Math.min(maxRate, rate + increase);
+            baseline = baseline * 0.8 + ratio * 0.2;
+        }
+        windowStart = now;
+        windowProbes = 0;
+        windowTimeouts = 0;
+    }
+}
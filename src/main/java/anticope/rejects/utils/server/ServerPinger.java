@@ -2,18 +2,22 @@ package anticope.rejects.utils.server;
 
 import anticope.rejects.gui.servers.ServerFinderScreen;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
 
-public class ServerPinger implements IServerFinderDoneListener, IServerFinderDisconnectListener {
-    private static final AtomicInteger threadNumber = new AtomicInteger(0);
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+public class ServerPinger implements IServerFinderDoneListener {
+    private static final int TIMEOUT_MS = 5000;
+    private static ServerProbe probe;
+
     private final Object portPingerLock = new Object();
+    private final PingExecutor executor;
     private MServerInfo server;
     private boolean done = false;
     private boolean failed = false;
-    private Thread thread;
+    private ServerProbe.Failure failure;
     private int pingPort;
-    private ServerListPinger pinger;
     private boolean notifiedDoneListeners = false;
     private boolean scanPorts;
     private int searchNumber;
@@ -24,9 +28,8 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
     private int successfulPortPingers = 0;
     private String pingIP;
 
-    public ServerPinger(boolean scanPorts, int searchNumber) {
-        pinger = new ServerListPinger();
-        pinger.addServerFinderDisconnectListener(this);
+    public ServerPinger(boolean scanPorts, int searchNumber, PingExecutor executor) {
+        this.executor = executor;
         this.scanPorts = scanPorts;
         this.searchNumber = searchNumber;
     }
@@ -43,10 +46,6 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         return searchNumber;
     }
 
-    public Thread getThread() {
-        return thread;
-    }
-
     public int getPingPort() {
         return pingPort;
     }
@@ -64,18 +63,13 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         server = new MServerInfo("", ip + ":" + port);
         server.version = null;
 
-        if (scanPorts) {
-            thread = new Thread(() -> pingInCurrentThread(ip, port),
-                    "Server Pinger #" + threadNumber.incrementAndGet());
-        } else {
-            thread = new Thread(() -> pingInCurrentThread(ip, port),
-                    "Server Pinger #" + threadNumber + ", " + port);
-        }
-        thread.start();
+        executor.execute(() -> pingInCurrentThread(ip, port));
     }
 
-    public ServerListPinger getServerListPinger() {
-        return pinger;
+    // the probe itself is async, this engine just parks its thread on it
+    private static synchronized ServerProbe getProbe() {
+        if (probe == null) probe = new ServerProbe(TIMEOUT_MS);
+        return probe;
     }
 
     private boolean isOldSearch() {
@@ -90,8 +84,8 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         for (int i = startingIncrement ? 1 : currentIncrement; i < currentIncrement * 2; i++) {
             if (isOldSearch())
                 return;
-            ServerPinger pp1 = new ServerPinger(false, searchNumber);
-            ServerPinger pp2 = new ServerPinger(false, searchNumber);
+            ServerPinger pp1 = new ServerPinger(false, searchNumber, executor);
+            ServerPinger pp2 = new ServerPinger(false, searchNumber, executor);
             for (IServerFinderDoneListener doneListener : doneListeners) {
                 pp1.addServerFinderDoneListener(doneListener);
                 pp2.addServerFinderDoneListener(doneListener);
@@ -113,12 +107,12 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         if (isOldSearch())
             return;
 
-
-        try {
-            pinger.add(server, () -> {
-            });
-        } catch (Exception e) {
+        MServerInfo info = getProbe().probe(new InetSocketAddress(ip, port), TIMEOUT_MS, null, f -> failure = f).join();
+        if (info == null) {
             failed = true;
+        } else {
+            info.address = server.address;
+            server = info;
         }
 
         startingIncrement = true;
@@ -130,11 +124,11 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
             runPortIncrement(ip);
         }
 
-        if (failed) {
-            pinger.cancel();
-            done = true;
-            notifyDoneListeners(false);
-        }
+        if (isOldSearch())
+            return;
+
+        done = true;
+        notifyDoneListeners(false);
     }
 
     public boolean isStillPinging() {
@@ -145,6 +139,13 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         return !failed;
     }
 
+    /**
+     * Why the ping failed, {@code null} while it is running or if the server answered.
+     */
+    public ServerProbe.Failure getFailure() {
+        return failure;
+    }
+
     public boolean isOtherVersion() {
         return server.protocolVersion != 47;
     }
@@ -153,41 +154,23 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
         return server.address;
     }
 
-    @Override
-    public void onServerDisconnect() {
-        if (isOldSearch())
-            return;
-
-        pinger.cancel();
-        done = true;
-        notifyDoneListeners(false);
-    }
-
+    // listeners touch the server list and screen, so they are run on the client thread
     private void notifyDoneListeners(boolean failure) {
         synchronized (this) {
-            if (!notifiedDoneListeners) {
-                notifiedDoneListeners = true;
-                for (IServerFinderDoneListener doneListener : doneListeners) {
-                    if (doneListener != null) {
-                        if (failure) {
-                            doneListener.onServerFailed(this);
-                        } else {
-                            doneListener.onServerDone(this);
-                        }
+            if (notifiedDoneListeners) return;
+            notifiedDoneListeners = true;
+        }
+        mc.execute(() -> {
+            for (IServerFinderDoneListener doneListener : doneListeners) {
+                if (doneListener != null) {
+                    if (failure) {
+                        doneListener.onServerFailed(this);
+                    } else {
+                        doneListener.onServerDone(this);
                     }
                 }
             }
-        }
-    }
-
-    @Override
-    public void onServerFailed() {
-        if (isOldSearch())
-            return;
-
-        pinger.cancel();
-        done = true;
-        notifyDoneListeners(true);
+        });
     }
 
     @Override
@@ -198,7 +181,7 @@ public class ServerPinger implements IServerFinderDoneListener, IServerFinderDis
                 successfulPortPingers += 1;
             if (portPingers == (startingIncrement ? currentIncrement * 2 - 2 : currentIncrement) && currentIncrement <= 5000 && successfulPortPingers > 0) {
                 startingIncrement = false;
-                new Thread(() -> runPortIncrement(pingIP)).start();
+                executor.execute(() -> runPortIncrement(pingIP));
             }
         }
     }
@@ -0,0 +1,140 @@
+package anticope.rejects.utils.server;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import net.minecraft.network.ClientConnection;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Reads a server's status over the shared client network threads. A server that closes the
+ * connection or answers with something that isn't a status response is asked again with the
+ * 1.6 and then the pre 1.4 ping, so every kind of server ends up as the same {@link MServerInfo}.
+ * A server that stays silent isn't asked again, it would only time out once per ping.
+ */
+public class ServerProbe {
+    private final Bootstrap bootstrap;
+    private final int readTimeoutMs;
+    private boolean measureLatency;
+    private boolean legacyFallback = true;
+
+    public ServerProbe(int readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+        this.bootstrap = new Bootstrap()
+            .group(ClientConnection.CLIENT_IO_GROUP.get())
+            .channel(NioSocketChannel.class)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, readTimeoutMs)
+            .option(ChannelOption.TCP_NODELAY, true);
+    }
+
+    /**
+     * Also time a ping/pong exchange for modern servers, costs one more round trip.
+     */
+    public ServerProbe measureLatency(boolean measureLatency) {
+        this.measureLatency = measureLatency;
+        return this;
+    }
+
+    public ServerProbe legacyFallback(boolean legacyFallback) {
+        this.legacyFallback = legacyFallback;
+        return this;
+    }
+
+    public CompletableFuture<MServerInfo> probe(InetSocketAddress target) {
+        return probe(target, readTimeoutMs, null, null);
+    }
+
+    /**
+     * @param onConnect told how the first connection attempt went, with {@code null} on success
+     * @param onFailure told why there is no status, just before the result completes with {@code null}
+     * @return completes with the status, or with {@code null} if the server didn't answer any of the pings
+     */
+    public CompletableFuture<MServerInfo> probe(InetSocketAddress target, int connectTimeoutMs, Consumer<Throwable> onConnect, Consumer<Failure> onFailure) {
+        CompletableFuture<MServerInfo> result = new CompletableFuture<>();
+        attempt(target, Stage.Modern, connectTimeoutMs, onConnect, onFailure, result);
+        return result;
+    }
+
+    // fallbacks reuse the probe's slot, they only run for hosts that are known to accept connections
+    private void attempt(InetSocketAddress target, Stage stage, int connectTimeoutMs, Consumer<Throwable> onConnect, Consumer<Failure> onFailure, CompletableFuture<MServerInfo> result) {
+        AtomicBoolean completed = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Consumer<MServerInfo> callback = info -> {
+            if (!completed.compareAndSet(false, true)) return;
+            Stage next = stage.next();
+            if (info == null && legacyFallback && next != null && !timedOut.get()) {
+                attempt(target, next, connectTimeoutMs, null, onFailure, result);
+                return;
+            }
+            if (info == null && onFailure != null) onFailure.accept(timedOut.get() ? Failure.Timeout : Failure.Other);
+            result.complete(info);
+        };
+
+        ChannelFuture future = bootstrap.clone()
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .handler(new ChannelInitializer<>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(new ReadTimeoutHandler(readTimeoutMs, TimeUnit.MILLISECONDS) {
+                        @Override
+                        protected void readTimedOut(ChannelHandlerContext ctx) throws Exception {
+                            timedOut.set(true);
+                            super.readTimedOut(ctx);
+                        }
+                    });
+                    ch.pipeline().addLast(stage == Stage.Modern
+                        ? new StatusPingHandler(target, measureLatency, callback)
+                        : new LegacyPingHandler(target, stage == Stage.Beta, callback));
+                }
+            }).connect(target);
+        // always hop onto the event loop so a burst of instant failures can't recurse through the caller
+        future.addListener(f -> {
+            if (onConnect != null) onConnect.accept(f.cause());
+            if (!f.isSuccess() && completed.compareAndSet(false, true)) {
+                future.channel().eventLoop().execute(() -> {
+                    if (onFailure != null) onFailure.accept(Failure.of(f.cause()));
+                    result.complete(null);
+                });
+            }
+        });
+    }
+
+    /**
+     * Why a probe ended without a status.
+     */
+    public enum Failure {
+        // the connection or the status read timed out, the host is likely black-holed
+        Timeout,
+        Refused,
+        // accepted but never sent a status, or anything else that went wrong
+        Other;
+
+        public static Failure of(Throwable cause) {
+            if (cause instanceof ConnectTimeoutException) return Timeout;
+            if (cause instanceof ConnectException) return Refused;
+            return Other;
+        }
+    }
+
+    private enum Stage {
+        Modern,
+        Legacy,
+        Beta;
+
+        private Stage next() {
+            return this == Modern ? Legacy : this == Legacy ? Beta : null;
+        }
+    }
+}
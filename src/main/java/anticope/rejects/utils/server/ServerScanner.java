@@ -0,0 +1,233 @@
+package anticope.rejects.utils.server;
+
+import io.netty.channel.ConnectTimeoutException;
+import net.minecraft.network.ClientConnection;
+
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings many servers from the shared client network threads. Targets are only pulled from
+ * the iterator when a connection slot frees up, so memory stays flat no matter how many
+ * addresses are scanned.
+ */
+public class ServerScanner {
+    private static final int DEFAULT_PORT = 25565;
+    private static final int MAX_PORT_INCREMENT = 5000;
+
+    private final Iterator<InetSocketAddress> targets;
+    private final int maxInFlight;
+    private final int timeoutMs;
+    private final boolean scanPorts;
+    private final Listener listener;
+    private final ServerProbe prober;
+
+    private final Object lock = new Object();
+    // port sweep follow-ups go before fresh addresses
+    private final ArrayDeque<InetSocketAddress> followUps = new ArrayDeque<>();
+    private final Map<String, PortSweep> sweeps = new ConcurrentHashMap<>();
+    private ScanRateController rateController;
+    private ScanMetrics metrics;
+    private boolean refillScheduled;
+    private int inFlight;
+    private volatile boolean cancelled;
+    private boolean finished;
+
+    public ServerScanner(Iterator<InetSocketAddress> targets, int maxInFlight, int timeoutMs, boolean scanPorts, Listener listener) {
+        this.targets = targets;
+        this.maxInFlight = maxInFlight;
+        this.timeoutMs = timeoutMs;
+        this.scanPorts = scanPorts;
+        this.listener = listener;
+        this.prober = new ServerProbe(timeoutMs);
+    }
+
+    /**
+     * Also time a ping/pong exchange for every server that answers, costs one more round trip.
+     */
+    public ServerScanner measureLatency(boolean measureLatency) {
+        prober.measureLatency(measureLatency);
+        return this;
+    }
+
+    /**
+     * Ask hosts that accept the connection but don't answer the status request with the
+     * legacy pings too, on by default.
+     */
+    public ServerScanner legacyFallback(boolean legacyFallback) {
+        prober.legacyFallback(legacyFallback);
+        return this;
+    }
+
+    /**
+     * Paces new probes and picks their connect timeout, without one probes start as soon as a slot is free.
+     */
+    public ServerScanner rateController(ScanRateController rateController) {
+        this.rateController = rateController;
+        return this;
+    }
+
+    public ServerScanner metrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public void start() {
+        fill();
+    }
+
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            followUps.clear();
+        }
+        fill();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    private void fill() {
+        List<InetSocketAddress> started = new ArrayList<>();
+        boolean done = false;
+        synchronized (lock) {
+            while (!cancelled && inFlight < maxInFlight) {
+                if (rateController != null && (!followUps.isEmpty() || targets.hasNext())) {
+                    long wait = rateController.reserve();
+                    if (wait > 0) {
+                        scheduleFill(wait);
+                        break;
+                    }
+                }
+                InetSocketAddress target = !followUps.isEmpty() ? followUps.poll() : targets.hasNext() ? targets.next() : null;
+                if (target == null) break;
+                inFlight++;
+                started.add(target);
+            }
+            if (inFlight == 0 && !finished && (cancelled || (followUps.isEmpty() && !targets.hasNext()))) {
+                finished = true;
+                done = true;
+            }
+        }
+        started.forEach(this::probe);
+        if (done) listener.onFinished();
+    }
+
+    // called with the lock held
+    private void scheduleFill(long nanos) {
+        if (refillScheduled) return;
+        refillScheduled = true;
+        ClientConnection.CLIENT_IO_GROUP.get().schedule(() -> {
+            synchronized (lock) {
+                refillScheduled = false;
+            }
+            fill();
+        }, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void probe(InetSocketAddress target) {
+        int connectTimeoutMs = rateController != null ? rateController.getTimeoutMs() : timeoutMs;
+        long start = System.nanoTime();
+        if (metrics != null) metrics.onStart();
+        prober.probe(target, connectTimeoutMs, cause -> {
+            if (rateController != null) {
+                // a refused connection is as good a round trip sample as an accepted one
+                if (cause instanceof ConnectTimeoutException) {
+                    rateController.onTimeout();
+                } else if (cause == null || cause instanceof ConnectException) {
+                    rateController.onResponse(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } else {
+                    rateController.onFailure();
+                }
+            }
+        }, failure -> {
+            if (metrics != null) metrics.onFailure(failure);
+        }).thenAccept(info -> {
+            if (metrics != null && info != null) metrics.onResponse(info.ping);
+            complete(target, info);
+        });
+    }
+
+    private void complete(InetSocketAddress target, MServerInfo info) {
+        synchronized (lock) {
+            inFlight--;
+        }
+        if (!cancelled) {
+            if (info != null) listener.onResponse(target, info);
+            else listener.onFailure(target);
+            if (scanPorts) updateSweep(target, info != null);
+        }
+        fill();
+    }
+
+    // servers found on the default port often have neighbours on nearby ports, keep widening
+    // the range around it for as long as new servers turn up
+    private void updateSweep(InetSocketAddress target, boolean success) {
+        String host = target.getHostString();
+        if (target.getPort() == DEFAULT_PORT) {
+            if (success && sweeps.putIfAbsent(host, new PortSweep()) == null) sweep(host, 1, 16);
+            return;
+        }
+
+        PortSweep sweep = sweeps.get(host);
+        if (sweep == null) return;
+        synchronized (sweep) {
+            if (success) sweep.found = true;
+            if (--sweep.pending > 0) return;
+            if (!sweep.found || sweep.to > MAX_PORT_INCREMENT) {
+                sweeps.remove(host);
+                return;
+            }
+            sweep(host, sweep.to, sweep.to * 2);
+        }
+    }
+
+    private void sweep(String host, int from, int to) {
+        List<InetSocketAddress> ports = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (DEFAULT_PORT - i > 0) ports.add(new InetSocketAddress(host, DEFAULT_PORT - i));
+            if (DEFAULT_PORT + i <= 65535) ports.add(new InetSocketAddress(host, DEFAULT_PORT + i));
+        }
+
+        PortSweep sweep = sweeps.get(host);
+        synchronized (sweep) {
+            sweep.to = to;
+            sweep.found = false;
+            sweep.pending = ports.size();
+        }
+        synchronized (lock) {
+            if (cancelled) return;
+            followUps.addAll(ports);
+        }
+        listener.onTargetsAdded(ports.size());
+    }
+
+    private static class PortSweep {
+        private int to;
+        private int pending;
+        private boolean found;
+    }
+
+    /**
+     * Called from the network threads.
+     */
+    public interface Listener {
+        void onResponse(InetSocketAddress address, MServerInfo info);
+
+        void onFailure(InetSocketAddress address);
+
+        default void onTargetsAdded(int amount) {}
+
+        default void onFinished() {}
+    }
+}
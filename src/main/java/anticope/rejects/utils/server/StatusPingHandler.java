@@ -0,0 +1,266 @@
+package anticope.rejects.utils.server;
+
+import com.google.gson.stream.JsonReader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import net.minecraft.SharedConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Speaks just enough of the server list ping protocol to read a server's status, without
+ * going through a full {@link net.minecraft.network.ClientConnection}.
+ */
+public class StatusPingHandler extends ChannelInboundHandlerAdapter {
+    private static final int STATUS_RESPONSE = 0x00;
+    private static final int PONG_RESPONSE = 0x01;
+
+    private final InetSocketAddress address;
+    private final boolean measureLatency;
+    private final Consumer<MServerInfo> callback;
+    private final long startTime = System.nanoTime();
+    private ByteBuf buffer;
+    private MServerInfo info;
+    private long pingSent;
+    private boolean done;
+
+    /**
+     * @param callback called once with the parsed status, or with {@code null} if the server didn't answer
+     */
+    public StatusPingHandler(InetSocketAddress address, Consumer<MServerInfo> callback) {
+        this(address, false, callback);
+    }
+
+    /**
+     * @param measureLatency also do the ping/pong exchange and report its round trip instead of
+     *                       the time until the status arrived
+     */
+    public StatusPingHandler(InetSocketAddress address, boolean measureLatency, Consumer<MServerInfo> callback) {
+        this.address = address;
+        this.measureLatency = measureLatency;
+        this.callback = callback;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        byte[] host = address.getHostString().getBytes(StandardCharsets.UTF_8);
+        int protocol = SharedConstants.getGameVersion().getProtocolVersion();
+        int handshakeLength = 1 + varIntSize(protocol) + varIntSize(host.length) + host.length + 2 + 1;
+
+        // handshake and status request go out together in a single pooled buffer
+        ByteBuf out = ctx.alloc().buffer(varIntSize(handshakeLength) + handshakeLength + 2);
+        writeVarInt(out, handshakeLength);
+        writeVarInt(out, 0x00);
+        writeVarInt(out, protocol);
+        writeVarInt(out, host.length);
+        out.writeBytes(host);
+        out.writeShort(address.getPort());
+        writeVarInt(out, 1);
+        writeVarInt(out, 1);
+        writeVarInt(out, 0x00);
+        ctx.writeAndFlush(out, ctx.voidPromise());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ByteBuf in = (ByteBuf) msg;
+        // most statuses fit in one read, only start accumulating when they don't
+        ByteBuf data;
+        if (buffer == null) {
+            data = in;
+        } else {
+            buffer.writeBytes(in);
+            in.release();
+            data = buffer;
+        }
+
+        while (!done) {
+            data.markReaderIndex();
+            int length = readVarInt(data);
+            if (length < 0 || data.readableBytes() < length) {
+                data.resetReaderIndex();
+                break;
+            }
+            int packetEnd = data.readerIndex() + length;
+            handlePacket(ctx, data, readVarInt(data), packetEnd);
+            if (!done) data.readerIndex(packetEnd);
+        }
+
+        if (done) {
+            if (data == in) in.release();
+        } else if (data == in) {
+            if (in.isReadable()) {
+                buffer = ctx.alloc().buffer(Math.max(256, in.readableBytes() * 2));
+                buffer.writeBytes(in);
+            }
+            in.release();
+        } else {
+            buffer.discardReadBytes();
+        }
+    }
+
+    private void handlePacket(ChannelHandlerContext ctx, ByteBuf data, int packetId, int packetEnd) {
+        if (info == null) {
+            int jsonLength = readVarInt(data);
+            if (packetId != STATUS_RESPONSE || jsonLength < 0 || data.readerIndex() + jsonLength > packetEnd) {
+                finish(ctx, null);
+                return;
+            }
+
+            MServerInfo parsed;
+            try {
+                parsed = parse(new ByteBufInputStream(data.slice(data.readerIndex(), jsonLength)));
+            } catch (IOException | RuntimeException e) {
+                parsed = null;
+            }
+            if (parsed == null || !measureLatency) {
+                finish(ctx, parsed);
+                return;
+            }
+
+            info = parsed;
+            pingSent = System.nanoTime();
+            ByteBuf ping = ctx.alloc().buffer(10);
+            writeVarInt(ping, 9);
+            writeVarInt(ping, 0x01);
+            ping.writeLong(pingSent);
+            ctx.writeAndFlush(ping, ctx.voidPromise());
+        } else if (packetId == PONG_RESPONSE) {
+            info.ping = (System.nanoTime() - pingSent) / 1_000_000L;
+            finish(ctx, info);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        // a server that answered the status but not the ping still counts
+        finish(ctx, info);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        finish(ctx, info);
+    }
+
+    private void finish(ChannelHandlerContext ctx, MServerInfo result) {
+        if (done) return;
+        done = true;
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        ctx.close();
+        callback.accept(result);
+    }
+
+    // streams over the json and only keeps what the finder uses, the favicon alone is often
+    // bigger than everything else put together and is skipped without being decoded
+    private MServerInfo parse(InputStream json) throws IOException {
+        MServerInfo info = new MServerInfo("", address.getHostString() + ":" + address.getPort());
+        info.ping = (System.nanoTime() - startTime) / 1_000_000L;
+        info.label = "";
+        info.playerCountLabel = "multiplayer.status.unknown";
+
+        JsonReader reader = new JsonReader(new InputStreamReader(json, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "description" -> {
+                    StringBuilder sb = new StringBuilder();
+                    readText(reader, sb);
+                    info.label = sb.toString();
+                }
+                case "version" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "name" -> info.version = reader.nextString();
+                            case "protocol" -> info.protocolVersion = reader.nextInt();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                case "players" -> {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "online" -> info.playerCount = reader.nextInt();
+                            case "max" -> info.playercountMax = reader.nextInt();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    info.playerCountLabel = info.playerCount + "/" + info.playercountMax;
+                }
+                default -> reader.skipValue();
+            }
+        }
+        if (info.version == null) info.version = "multiplayer.status.old";
+        return info;
+    }
+
+    static void readText(JsonReader reader, StringBuilder sb) throws IOException {
+        switch (reader.peek()) {
+            case STRING, NUMBER -> sb.append(reader.nextString());
+            // nextString() refuses booleans
+            case BOOLEAN -> sb.append(reader.nextBoolean());
+            case BEGIN_ARRAY -> {
+                reader.beginArray();
+                while (reader.hasNext()) readText(reader, sb);
+                reader.endArray();
+            }
+            case BEGIN_OBJECT -> {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        // can be null, or anything else a component allows
+                        case "text" -> readText(reader, sb);
+                        case "extra" -> readText(reader, sb);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            default -> reader.skipValue();
+        }
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    /**
+     * @return the value, or -1 if the buffer doesn't hold a complete varint yet
+     */
+    static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            if (!buf.isReadable()) return -1;
+            byte b = buf.readByte();
+            value |= (b & 0x7F) << (i * 7);
+            if ((b & 0x80) == 0) return value;
+        }
+        return -1;
+    }
+}
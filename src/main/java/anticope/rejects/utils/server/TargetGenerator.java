@@ -0,0 +1,195 @@
+package anticope.rejects.utils.server;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Lazily walks every address of a set of IPv4 ranges in a shuffled order. Only the ranges are
+ * kept in memory, addresses are made from packed ints as they are asked for.
+ * <p>
+ * Accepts a list of entries separated by {@code ;}, {@code ,} or spaces, each being a host,
+ * a CIDR block ({@code 10.0.0.0/16}), a range ({@code 10.0.0.1-10.0.3.255} or
+ * {@code 10.0.0.1-50}) or {@code @file} with one entry per line.
+ */
+public class TargetGenerator implements Iterator<InetSocketAddress> {
+    private static final Pattern LIST_SEPARATOR = Pattern.compile("[;,\\s]+");
+    private static final Pattern RANGE = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}-\\d{1,3}(\\.\\d{1,3}){3}|\\d{1,3}(\\.\\d{1,3}){3}-\\d{1,3}");
+
+    private final int[] starts;
+    // prefix[i] is how many addresses come before range i, prefix[length] is the total
+    private final long[] prefix;
+    private final int port;
+
+    // a full period lcg over the next power of two permutes the indices, values past the end are skipped
+    private final long mask;
+    private final long multiplier;
+    private final long increment;
+    private final int shift;
+    private long state;
+    private long generated;
+
+    private TargetGenerator(List<long[]> ranges, int port) {
+        List<long[]> merged = merge(ranges);
+        this.starts = new int[merged.size()];
+        this.prefix = new long[merged.size() + 1];
+        for (int i = 0; i < merged.size(); i++) {
+            starts[i] = (int) merged.get(i)[0];
+            prefix[i + 1] = prefix[i] + merged.get(i)[1] - merged.get(i)[0] + 1;
+        }
+        this.port = port;
+
+        long size = Math.max(1, prefix[starts.length]);
+        int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+        this.mask = (1L << bits) - 1;
+        this.shift = Math.max(1, bits / 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        this.multiplier = (random.nextLong() & mask & ~3L) | 1;
+        this.increment = (random.nextLong() & mask) | 1;
+        this.state = random.nextLong() & mask;
+    }
+
+    /**
+     * Host names in the spec are looked up with {@link DnsCache#getByName}, so this blocks and
+     * has to run off the client thread.
+     */
+    public static TargetGenerator parse(String spec, int port) throws UnknownHostException {
+        List<long[]> ranges = new ArrayList<>();
+        for (String entry : LIST_SEPARATOR.split(spec.trim())) {
+            if (!entry.isEmpty()) parseEntry(entry, ranges);
+        }
+        if (ranges.isEmpty()) throw new IllegalArgumentException("No targets given.");
+        return new TargetGenerator(ranges, port);
+    }
+
+    /**
+     * Whether the spec is just one host, as opposed to a list, block, range or file.
+     */
+    public static boolean isSingleHost(String spec) {
+        spec = spec.trim();
+        return !spec.isEmpty() && !spec.startsWith("@") && !spec.contains("/")
+            && !RANGE.matcher(spec).matches() && !LIST_SEPARATOR.matcher(spec).find();
+    }
+
+    /**
+     * The old server finder neighbourhood, the /24 of the address and the three on either side of it.
+     */
+    public static TargetGenerator around(InetAddress address, int port) {
+        int ip = toInt(address) & 0xFFFFFF00;
+        List<long[]> ranges = new ArrayList<>();
+        for (int change = -3; change <= 3; change++) {
+            // the third octet wraps like it always did instead of spilling into the second one
+            int subnet = (ip & 0xFFFF0000) | ((((ip >>> 8) + change) & 0xFF) << 8);
+            ranges.add(new long[]{Integer.toUnsignedLong(subnet), Integer.toUnsignedLong(subnet | 0xFF)});
+        }
+        return new TargetGenerator(ranges, port);
+    }
+
+    private static void parseEntry(String entry, List<long[]> ranges) throws UnknownHostException {
+        if (entry.startsWith("@")) {
+            try (Stream<String> lines = Files.lines(Path.of(entry.substring(1)))) {
+                for (String line : (Iterable<String>) lines::iterator) {
+                    line = line.strip();
+                    if (!line.isEmpty() && !line.startsWith("#")) parseEntry(line, ranges);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Can't read " + entry.substring(1), e);
+            }
+            return;
+        }
+
+        int slash = entry.indexOf('/');
+        if (slash >= 0) {
+            int bits = Integer.parseInt(entry.substring(slash + 1));
+            if (bits < 0 || bits > 32) throw new IllegalArgumentException("Invalid prefix length " + bits);
+            long hostMask = bits == 0 ? 0xFFFFFFFFL : (1L << (32 - bits)) - 1;
+            long ip = Integer.toUnsignedLong(toInt(resolve(entry.substring(0, slash))));
+            ranges.add(new long[]{ip & ~hostMask, (ip & ~hostMask) | hostMask});
+            return;
+        }
+
+        // hostnames may contain dashes too, only numeric ones are ranges
+        if (RANGE.matcher(entry).matches()) {
+            int dash = entry.indexOf('-');
+            long from = Integer.toUnsignedLong(toInt(resolve(entry.substring(0, dash))));
+            String end = entry.substring(dash + 1);
+            long to = end.contains(".")
+                ? Integer.toUnsignedLong(toInt(resolve(end)))
+                : (from & 0xFFFFFF00L) | Integer.parseInt(end);
+            if (to < from || (!end.contains(".") && Integer.parseInt(end) > 255)) throw new IllegalArgumentException("Invalid range " + entry);
+            ranges.add(new long[]{from, to});
+            return;
+        }
+
+        long ip = Integer.toUnsignedLong(toInt(resolve(entry.split(":")[0])));
+        ranges.add(new long[]{ip, ip});
+    }
+
+    private static InetAddress resolve(String host) throws UnknownHostException {
+        InetAddress address = DnsCache.getByName(host);
+        if (!(address instanceof Inet4Address)) throw new UnknownHostException(host + " has no IPv4 address");
+        return address;
+    }
+
+    private static int toInt(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
+    }
+
+    private static List<long[]> merge(List<long[]> ranges) {
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) last[1] = Math.max(last[1], range[1]);
+            else merged.add(range.clone());
+        }
+        return merged;
+    }
+
+    /**
+     * How many addresses this generator produces in total.
+     */
+    public long size() {
+        return prefix[starts.length];
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generated < size();
+    }
+
+    @Override
+    public InetSocketAddress next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        long index;
+        do {
+            state = (state * multiplier + increment) & mask;
+            // the low bits of an lcg cycle quickly, fold the high ones in so neighbours land far apart
+            index = state ^ (state >>> shift);
+        } while (index >= size());
+        generated++;
+
+        int range = Arrays.binarySearch(prefix, index);
+        if (range < 0) range = -range - 2;
+        int ip = starts[range] + (int) (index - prefix[range]);
+        byte[] bytes = {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip};
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(bytes), port);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
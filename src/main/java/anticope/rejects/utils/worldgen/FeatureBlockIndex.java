@@ -0,0 +1,252 @@
+package anticope.rejects.utils.worldgen;
+
+import anticope.rejects.events.ChunkUnloadEvent;
+import anticope.rejects.events.PlayerRespawnEvent;
+import meteordevelopment.meteorclient.events.game.GameJoinedEvent;
+import meteordevelopment.meteorclient.events.game.GameLeftEvent;
+import meteordevelopment.meteorclient.events.world.BlockUpdateEvent;
+import meteordevelopment.meteorclient.events.world.ChunkDataEvent;
+import meteordevelopment.orbit.EventHandler;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static meteordevelopment.meteorclient.MeteorClient.mc;
+
+/**
+ * Remembers where a fixed set of blocks was seen in the loaded chunks of the current world
+ * as chunks arrive, change and unload, so structure guesses from blocks don't need to rescan
+ * the world for every query.
+ */
+public class FeatureBlockIndex {
+    private static final int[][] NEIGHBOURS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private final Set<Block> blocks;
+    private final Map<Long, ChunkEntry> chunks = new ConcurrentHashMap<>();
+    private RegistryKey<World> dimension;
+    // a single thread keeps chunk scans and block updates in order
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Rejects Feature Index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FeatureBlockIndex(Collection<Block> blocks) {
+        this.blocks = Set.copyOf(blocks);
+    }
+
+    @EventHandler
+    private void onChunkData(ChunkDataEvent event) {
+        WorldChunk chunk = event.chunk();
+        ChunkPos pos = chunk.getPos();
+        ChunkSection[] sections = chunk.getSectionArray();
+
+        // the palette tells us which sections can't contain any of our blocks, only copy the rest
+        List<PalettedContainer<BlockState>> containers = new ArrayList<>();
+        List<Integer> sectionYs = new ArrayList<>();
+        for (int i = 0; i < sections.length; i++) {
+            ChunkSection section = sections[i];
+            if (section.isEmpty() || !section.hasAny(state -> blocks.contains(state.getBlock()))) continue;
+            containers.add(section.getBlockStateContainer().copy());
+            sectionYs.add(chunk.sectionIndexToCoord(i) << 4);
+        }
+
+        long key = pos.toLong();
+        if (containers.isEmpty()) {
+            executor.execute(() -> chunks.remove(key));
+            return;
+        }
+        executor.execute(() -> scan(key, pos, containers, sectionYs));
+    }
+
+    @EventHandler
+    private void onBlockUpdate(BlockUpdateEvent event) {
+        boolean tracked = blocks.contains(event.newState.getBlock());
+        if (!tracked && !blocks.contains(event.oldState.getBlock())) return;
+
+        long key = ChunkPos.toLong(event.pos.getX() >> 4, event.pos.getZ() >> 4);
+        long packed = event.pos.asLong();
+        Block block = event.newState.getBlock();
+        executor.execute(() -> {
+            ChunkEntry entry = chunks.getOrDefault(key, ChunkEntry.EMPTY).without(packed);
+            if (tracked) entry = entry.with(packed, block);
+            if (entry.isEmpty()) chunks.remove(key);
+            else chunks.put(key, entry);
+        });
+    }
+
+    @EventHandler
+    private void onChunkUnload(ChunkUnloadEvent event) {
+        long key = event.pos.toLong();
+        executor.execute(() -> chunks.remove(key));
+    }
+
+    // chunk keys don't say which world they came from, so start over in every new one
+    @EventHandler
+    private void onGameJoined(GameJoinedEvent event) {
+        clear();
+    }
+
+    @EventHandler
+    private void onPlayerRespawn(PlayerRespawnEvent event) {
+        RegistryKey<World> current = mc.world != null ? mc.world.getRegistryKey() : null;
+        if (!Objects.equals(current, dimension)) clear();
+    }
+
+    @EventHandler
+    private void onGameLeft(GameLeftEvent event) {
+        clear();
+    }
+
+    private void clear() {
+        dimension = mc.world != null ? mc.world.getRegistryKey() : null;
+        executor.execute(chunks::clear);
+    }
+
+    private void scan(long key, ChunkPos pos, List<PalettedContainer<BlockState>> containers, List<Integer> sectionYs) {
+        List<Long> positions = new ArrayList<>();
+        List<Block> found = new ArrayList<>();
+        for (int i = 0; i < containers.size(); i++) {
+            PalettedContainer<BlockState> container = containers.get(i);
+            int minY = sectionYs.get(i);
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        Block block = container.get(x, y, z).getBlock();
+                        if (!blocks.contains(block)) continue;
+                        positions.add(BlockPos.asLong(pos.getStartX() + x, minY + y, pos.getStartZ() + z));
+                        found.add(block);
+                    }
+                }
+            }
+        }
+
+        if (positions.isEmpty()) {
+            chunks.remove(key);
+            return;
+        }
+        long[] packed = new long[positions.size()];
+        for (int i = 0; i < packed.length; i++) packed[i] = positions.get(i);
+        chunks.put(key, new ChunkEntry(packed, found.toArray(new Block[0])));
+    }
+
+    /**
+     * Groups the indexed chunks within {@code radius} chunks of {@code center} containing any
+     * of {@code wanted} into clusters of touching chunks and returns the closest cluster with at
+     * least {@code minCount} blocks, or the biggest one if none is large enough.
+     */
+    public Cluster nearestCluster(Collection<Block> wanted, BlockPos center, int minCount, int radius) {
+        int centerX = center.getX() >> 4, centerZ = center.getZ() >> 4;
+        Map<Long, Integer> counts = new HashMap<>();
+        chunks.forEach((key, entry) -> {
+            if (Math.abs(ChunkPos.getPackedX(key) - centerX) > radius || Math.abs(ChunkPos.getPackedZ(key) - centerZ) > radius) return;
+            int count = entry.count(wanted);
+            if (count > 0) counts.put(key, count);
+        });
+
+        Cluster nearest = null, biggest = null;
+        Set<Long> visited = new HashSet<>();
+        for (long start : counts.keySet()) {
+            if (!visited.add(start)) continue;
+            List<Long> members = new ArrayList<>();
+            ArrayDeque<Long> queue = new ArrayDeque<>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                long key = queue.poll();
+                members.add(key);
+                int x = ChunkPos.getPackedX(key), z = ChunkPos.getPackedZ(key);
+                for (int[] offset : NEIGHBOURS) {
+                    long next = ChunkPos.toLong(x + offset[0], z + offset[1]);
+                    if (counts.containsKey(next) && visited.add(next)) queue.add(next);
+                }
+            }
+
+            Cluster cluster = toCluster(members, wanted, center);
+            if (biggest == null || cluster.count > biggest.count) biggest = cluster;
+            if (cluster.count >= minCount && (nearest == null || cluster.distanceSq < nearest.distanceSq)) nearest = cluster;
+        }
+        return nearest != null ? nearest : biggest;
+    }
+
+    // the block closest to the middle of the cluster, so the result is a real structure block
+    private Cluster toCluster(List<Long> members, Collection<Block> wanted, BlockPos center) {
+        long sumX = 0, sumY = 0, sumZ = 0;
+        int count = 0;
+        for (long key : members) {
+            ChunkEntry entry = chunks.get(key);
+            if (entry == null) continue;
+            for (int i = 0; i < entry.positions.length; i++) {
+                if (!wanted.contains(entry.blocks[i])) continue;
+                sumX += BlockPos.unpackLongX(entry.positions[i]);
+                sumY += BlockPos.unpackLongY(entry.positions[i]);
+                sumZ += BlockPos.unpackLongZ(entry.positions[i]);
+                count++;
+            }
+        }
+        if (count == 0) return new Cluster(center, 0, Long.MAX_VALUE);
+
+        BlockPos middle = new BlockPos((int) (sumX / count), (int) (sumY / count), (int) (sumZ / count));
+        BlockPos closest = null;
+        for (long key : members) {
+            ChunkEntry entry = chunks.get(key);
+            if (entry == null) continue;
+            for (int i = 0; i < entry.positions.length; i++) {
+                if (!wanted.contains(entry.blocks[i])) continue;
+                BlockPos pos = BlockPos.fromLong(entry.positions[i]);
+                if (closest == null || pos.getSquaredDistance(middle) < closest.getSquaredDistance(middle)) closest = pos;
+            }
+        }
+        return new Cluster(closest, count, closest.getSquaredDistance(center));
+    }
+
+    public record Cluster(BlockPos pos, int count, double distanceSq) {}
+
+    private record ChunkEntry(long[] positions, Block[] blocks) {
+        private static final ChunkEntry EMPTY = new ChunkEntry(new long[0], new Block[0]);
+
+        private boolean isEmpty() {
+            return positions.length == 0;
+        }
+
+        private int count(Collection<Block> wanted) {
+            int count = 0;
+            for (Block block : blocks) {
+                if (wanted.contains(block)) count++;
+            }
+            return count;
+        }
+
+        private ChunkEntry with(long pos, Block block) {
+            long[] newPositions = Arrays.copyOf(positions, positions.length + 1);
+            Block[] newBlocks = Arrays.copyOf(blocks, blocks.length + 1);
+            newPositions[positions.length] = pos;
+            newBlocks[blocks.length] = block;
+            return new ChunkEntry(newPositions, newBlocks);
+        }
+
+        private ChunkEntry without(long pos) {
+            for (int i = 0; i < positions.length; i++) {
+                if (positions[i] != pos) continue;
+                long[] newPositions = new long[positions.length - 1];
+                Block[] newBlocks = new Block[blocks.length - 1];
+                System.arraycopy(positions, 0, newPositions, 0, i);
+                System.arraycopy(positions, i + 1, newPositions, i, positions.length - i - 1);
+                System.arraycopy(blocks, 0, newBlocks, 0, i);
+                System.arraycopy(blocks, i + 1, newBlocks, i, blocks.length - i - 1);
+                return new ChunkEntry(newPositions, newBlocks);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package anticope.rejects.utils.worldgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared between a locate search running in the background and whoever started it,
+ * so the search can report how far it got and stop early when cancelled.
+ */
+public class LocateProgress {
+    private final AtomicLong scanned = new AtomicLong();
+    private volatile int radius;
+    private volatile boolean cancelled;
+
+    public void step(int radius) {
+        scanned.incrementAndGet();
+        this.radius = radius;
+    }
+
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    /**
+     * @return the distance in blocks from the search center that has been reached so far
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
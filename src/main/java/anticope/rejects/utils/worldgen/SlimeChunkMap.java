@@ -0,0 +1,233 @@
+package anticope.rejects.utils.worldgen;
+
+import anticope.rejects.utils.seeds.Seed;
+import com.seedfinding.mccore.rand.ChunkRand;
+import com.seedfinding.mccore.state.Dimension;
+import com.seedfinding.mccore.util.pos.CPos;
+import com.seedfinding.mccore.version.MCVersion;
+import com.seedfinding.mcfeature.misc.SlimeChunk;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Slime chunks are a pure function of the seed, so a square area around the player is
+ * precomputed into a bitmap in the background and every query reads from it.
+ */
+public class SlimeChunkMap {
+    public static final int RADIUS = 256;
+
+    private static final AtomicReference<Pending> CURRENT = new AtomicReference<>();
+    // the newest finished map, still served while its replacement is computed
+    private static volatile SlimeChunkMap last;
+
+    private final long seed;
+    private final MCVersion version;
+    private final int centerX, centerZ;
+    private final int size;
+    private final long[][] rows;
+    private int[] counts;
+
+    private SlimeChunkMap(long seed, MCVersion version, int centerX, int centerZ, int radius) {
+        this.seed = seed;
+        this.version = version;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.size = radius * 2 + 1;
+        this.rows = new long[size][];
+
+        SlimeChunk slimeChunk = WorldGenContext.get(seed, version, Dimension.OVERWORLD).getFeature(SlimeChunk.class, SlimeChunk::new);
+        int minX = centerX - radius;
+        int minZ = centerZ - radius;
+        IntStream.range(0, size).parallel().forEach(row -> {
+            ChunkRand rand = WorldGenContext.chunkRand();
+            long[] bits = new long[(size + 63) >> 6];
+            for (int col = 0; col < size; col++) {
+                if (slimeChunk.at(minX + col, minZ + row, true).testStart(seed, rand)) {
+                    bits[col >> 6] |= 1L << col;
+                }
+            }
+            rows[row] = bits;
+        });
+    }
+
+    /**
+     * Returns the map covering the given chunk, starting a new background computation when
+     * the cached one belongs to another seed or the chunk is too close to its border.
+     */
+    public static CompletableFuture<SlimeChunkMap> around(Seed seed, int chunkX, int chunkZ) {
+        while (true) {
+            Pending pending = CURRENT.get();
+            if (pending != null && pending.covers(seed, chunkX, chunkZ)) return pending.future;
+
+            // only the caller that wins the swap starts computing
+            Pending next = new Pending(seed.seed, seed.version, chunkX, chunkZ);
+            if (CURRENT.compareAndSet(pending, next)) {
+                next.start();
+                return next.future;
+            }
+        }
+    }
+
+    /**
+     * Returns a ready map covering the given chunk without blocking. While a new map is being
+     * computed the previous one keeps being used for as long as it covers the chunk.
+     */
+    public static SlimeChunkMap getNow(Seed seed, int chunkX, int chunkZ) {
+        CompletableFuture<SlimeChunkMap> future = around(seed, chunkX, chunkZ);
+        if (future.isDone() && !future.isCompletedExceptionally()) return future.join();
+
+        SlimeChunkMap map = last;
+        if (map != null && map.seed == seed.seed && map.version == seed.version && map.contains(chunkX, chunkZ)) return map;
+        return null;
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        int radius = size >> 1;
+        return Math.abs(chunkX - centerX) <= radius && Math.abs(chunkZ - centerZ) <= radius;
+    }
+
+    public boolean isSlimeChunk(int chunkX, int chunkZ) {
+        if (!contains(chunkX, chunkZ)) return false;
+        int col = chunkX - centerX + (size >> 1);
+        int row = chunkZ - centerZ + (size >> 1);
+        return (rows[row][col >> 6] & (1L << col)) != 0;
+    }
+
+    public CPos nearest(int chunkX, int chunkZ) {
+        List<CPos> nearest = nearest(chunkX, chunkZ, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Walks square rings outwards until {@code n} slime chunks are found and no closer one
+     * can be hiding in a later ring.
+     */
+    public List<CPos> nearest(int chunkX, int chunkZ, int n) {
+        List<CPos> found = new ArrayList<>();
+        if (n <= 0) return found;
+        Comparator<CPos> byDistance = Comparator.comparingLong(c -> distSq(c, chunkX, chunkZ));
+
+        int maxRing = size;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ring == 0) {
+                if (isSlimeChunk(chunkX, chunkZ)) found.add(new CPos(chunkX, chunkZ));
+            } else {
+                for (int i = -ring; i < ring; i++) {
+                    addIfSlime(found, chunkX + i, chunkZ - ring);
+                    addIfSlime(found, chunkX + ring, chunkZ + i);
+                    addIfSlime(found, chunkX - i, chunkZ + ring);
+                    addIfSlime(found, chunkX - ring, chunkZ - i);
+                }
+            }
+            if (found.size() >= n && maxRing == size) {
+                // anything outside this radius is farther than the candidates we have
+                found.sort(byDistance);
+                maxRing = Math.min(size, (int) Math.ceil(Math.sqrt(distSq(found.get(n - 1), chunkX, chunkZ))));
+            }
+        }
+
+        found.sort(byDistance);
+        return found.size() > n ? new ArrayList<>(found.subList(0, n)) : found;
+    }
+
+    /**
+     * Finds the {@code area}x{@code area} window within {@code radius} chunks of the given
+     * chunk that contains the most slime chunks and returns its center.
+     */
+    public CPos densest(int chunkX, int chunkZ, int radius, int area) {
+        int[] counts = prefixCounts();
+        int stride = size + 1;
+        int offset = size >> 1;
+        int half = area >> 1;
+
+        CPos best = null;
+        int bestCount = 0;
+        for (int z = chunkZ - radius; z <= chunkZ + radius; z++) {
+            for (int x = chunkX - radius; x <= chunkX + radius; x++) {
+                int minCol = x - half - centerX + offset, minRow = z - half - centerZ + offset;
+                int maxCol = minCol + area, maxRow = minRow + area;
+                if (minCol < 0 || minRow < 0 || maxCol > size || maxRow > size) continue;
+
+                int count = counts[maxRow * stride + maxCol] - counts[minRow * stride + maxCol]
+                    - counts[maxRow * stride + minCol] + counts[minRow * stride + minCol];
+                if (count > bestCount) {
+                    bestCount = count;
+                    best = new CPos(x, z);
+                }
+            }
+        }
+        return best;
+    }
+
+    public int getCenterX() {
+        return centerX;
+    }
+
+    public int getCenterZ() {
+        return centerZ;
+    }
+
+    private synchronized int[] prefixCounts() {
+        if (counts != null) return counts;
+        int stride = size + 1;
+        int[] sums = new int[stride * stride];
+        for (int row = 0; row < size; row++) {
+            int rowSum = 0;
+            for (int col = 0; col < size; col++) {
+                if ((rows[row][col >> 6] & (1L << col)) != 0) rowSum++;
+                sums[(row + 1) * stride + col + 1] = sums[row * stride + col + 1] + rowSum;
+            }
+        }
+        return counts = sums;
+    }
+
+    private void addIfSlime(List<CPos> found, int chunkX, int chunkZ) {
+        if (isSlimeChunk(chunkX, chunkZ)) found.add(new CPos(chunkX, chunkZ));
+    }
+
+    private static long distSq(CPos pos, int x, int z) {
+        long dx = pos.getX() - x;
+        long dz = pos.getZ() - z;
+        return dx * dx + dz * dz;
+    }
+
+    private static class Pending {
+        private final long seed;
+        private final MCVersion version;
+        private final int centerX, centerZ;
+        private final CompletableFuture<SlimeChunkMap> future = new CompletableFuture<>();
+
+        private Pending(long seed, MCVersion version, int centerX, int centerZ) {
+            this.seed = seed;
+            this.version = version;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+        }
+
+        private void start() {
+            MeteorExecutor.execute(() -> {
+                try {
+                    SlimeChunkMap map = new SlimeChunkMap(seed, version, centerX, centerZ, RADIUS);
+                    // a slow older map must not replace a newer one
+                    if (CURRENT.get() == this) last = map;
+                    future.complete(map);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+
+        // recompute once the player gets within half the radius of the border
+        private boolean covers(Seed other, int chunkX, int chunkZ) {
+            if (future.isCompletedExceptionally()) return false;
+            return seed == other.seed && version == other.version
+                && Math.abs(chunkX - centerX) <= RADIUS / 2 && Math.abs(chunkZ - centerZ) <= RADIUS / 2;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package anticope.rejects.utils.worldgen;
+
+import anticope.rejects.events.SeedChangedEvent;
+import anticope.rejects.utils.seeds.Seed;
+import anticope.rejects.utils.seeds.Seeds;
+import com.seedfinding.mccore.state.Dimension;
+import com.seedfinding.mccore.util.pos.CPos;
+import com.seedfinding.mccore.version.MCVersion;
+import com.seedfinding.mcfeature.structure.Stronghold;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.utils.PostInit;
+import meteordevelopment.meteorclient.utils.network.MeteorExecutor;
+import meteordevelopment.orbit.EventHandler;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stronghold starts only depend on the seed and version, so they are generated once
+ * in the background and kept in a small k-d tree for nearest and k-nearest lookups.
+ */
+public class StrongholdCache {
+    private static final Map<Key, CompletableFuture<StrongholdCache>> CACHE = new ConcurrentHashMap<>();
+
+    private final CPos[] tree;
+    private final List<CPos> starts;
+
+    private StrongholdCache(CPos[] starts) {
+        this.starts = List.of(starts.clone());
+        this.tree = starts.clone();
+        build(0, tree.length, 0);
+    }
+
+    @PostInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(StrongholdCache.class);
+    }
+
+    @EventHandler
+    private static void onSeedChanged(SeedChangedEvent event) {
+        Seed seed = Seeds.get().getSeed();
+        if (seed != null) get(seed);
+    }
+
+    public static CompletableFuture<StrongholdCache> get(Seed seed) {
+        return get(seed.seed, seed.version);
+    }
+
+    public static CompletableFuture<StrongholdCache> get(long seed, MCVersion version) {
+        Key key = new Key(seed, version);
+        CompletableFuture<StrongholdCache> future = CACHE.computeIfAbsent(key, StrongholdCache::generateAsync);
+        // don't keep failed generations around, retry on the next lookup
+        if (future.isCompletedExceptionally() && CACHE.remove(key, future)) {
+            future = CACHE.computeIfAbsent(key, StrongholdCache::generateAsync);
+        }
+        return future;
+    }
+
+    /**
+     * Returns the cache if it has already been generated, without blocking.
+     */
+    public static StrongholdCache getNow(Seed seed) {
+        CompletableFuture<StrongholdCache> future = get(seed);
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    private static CompletableFuture<StrongholdCache> generateAsync(Key key) {
+        return CompletableFuture.supplyAsync(() -> generate(key), MeteorExecutor::execute);
+    }
+
+    private static StrongholdCache generate(Key key) {
+        WorldGenContext context = WorldGenContext.get(key.seed, key.version, Dimension.OVERWORLD);
+        Stronghold stronghold = context.getFeature(Stronghold.class, Stronghold::new);
+        List<CPos> starts = new ArrayList<>();
+        for (CPos start : stronghold.getAllStarts(context.getBiomeSource(), WorldGenContext.chunkRand())) {
+            if (start != null) starts.add(start);
+        }
+        return new StrongholdCache(starts.toArray(new CPos[0]));
+    }
+
+    public List<CPos> getAll() {
+        return starts;
+    }
+
+    public CPos nearest(int chunkX, int chunkZ) {
+        List<CPos> nearest = nearest(chunkX, chunkZ, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    /**
+     * Returns up to {@code k} stronghold starts ordered by distance to the given chunk.
+     */
+    public List<CPos> nearest(int chunkX, int chunkZ, int k) {
+        if (k <= 0 || tree.length == 0) return List.of();
+        PriorityQueue<CPos> best = new PriorityQueue<>(k, Comparator.<CPos>comparingLong(c -> distSq(c, chunkX, chunkZ)).reversed());
+        search(0, tree.length, 0, chunkX, chunkZ, k, best);
+
+        List<CPos> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingLong(c -> distSq(c, chunkX, chunkZ)));
+        return result;
+    }
+
+    private void search(int from, int to, int depth, int x, int z, int k, PriorityQueue<CPos> best) {
+        if (from >= to) return;
+        int mid = (from + to) >>> 1;
+        CPos node = tree[mid];
+
+        if (best.size() < k) best.add(node);
+        else if (distSq(node, x, z) < distSq(best.peek(), x, z)) {
+            best.poll();
+            best.add(node);
+        }
+
+        long diff = depth % 2 == 0 ? (long) x - node.getX() : (long) z - node.getZ();
+        boolean left = diff < 0;
+        if (left) search(from, mid, depth + 1, x, z, k, best);
+        else search(mid + 1, to, depth + 1, x, z, k, best);
+
+        if (best.size() < k || diff * diff < distSq(best.peek(), x, z)) {
+            if (left) search(mid + 1, to, depth + 1, x, z, k, best);
+            else search(from, mid, depth + 1, x, z, k, best);
+        }
+    }
+
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) return;
+        Comparator<CPos> axis = depth % 2 == 0 ? Comparator.comparingInt(CPos::getX) : Comparator.comparingInt(CPos::getZ);
+        Arrays.sort(tree, from, to, axis);
+        int mid = (from + to) >>> 1;
+        build(from, mid, depth + 1);
+        build(mid + 1, to, depth + 1);
+    }
+
+    private static long distSq(CPos pos, int x, int z) {
+        long dx = pos.getX() - x;
+        long dz = pos.getZ() - z;
+        return dx * dx + dz * dz;
+    }
+
+    private record Key(long seed, MCVersion version) {}
+}
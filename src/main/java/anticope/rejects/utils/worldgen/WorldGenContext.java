@@ -0,0 +1,103 @@
+package anticope.rejects.utils.worldgen;
+
+import anticope.rejects.events.SeedChangedEvent;
+import anticope.rejects.utils.seeds.Seed;
+import com.seedfinding.mcbiome.source.BiomeSource;
+import com.seedfinding.mccore.rand.ChunkRand;
+import com.seedfinding.mccore.state.Dimension;
+import com.seedfinding.mccore.version.MCVersion;
+import com.seedfinding.mcterrain.TerrainGenerator;
+import meteordevelopment.meteorclient.MeteorClient;
+import meteordevelopment.meteorclient.utils.PostInit;
+import meteordevelopment.orbit.EventHandler;
+import net.minecraft.util.math.random.ChunkRandom;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Everything world generation needs for one seed, version and dimension, built lazily and
+ * shared between locate, the slime chunk finder and ore sim.
+ */
+public class WorldGenContext {
+    private static final Map<Key, WorldGenContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<ChunkRand> CHUNK_RAND = ThreadLocal.withInitial(ChunkRand::new);
+    private static final ThreadLocal<ChunkRandom> CHUNK_RANDOM = ThreadLocal.withInitial(() -> new ChunkRandom(ChunkRandom.RandomProvider.XOROSHIRO.create(0)));
+
+    public final long seed;
+    public final MCVersion version;
+    public final Dimension dimension;
+
+    // the mc_biome layer caches aren't thread safe, so every thread gets its own biome source
+    private final ThreadLocal<BiomeSource> biomeSource;
+    private final ThreadLocal<TerrainGenerator> terrainGenerator;
+    private final Map<Object, Object> features = new ConcurrentHashMap<>();
+
+    private WorldGenContext(Key key) {
+        this.seed = key.seed;
+        this.version = key.version;
+        this.dimension = key.dimension;
+        this.biomeSource = ThreadLocal.withInitial(() -> BiomeSource.of(dimension, version, seed));
+        this.terrainGenerator = ThreadLocal.withInitial(() -> TerrainGenerator.of(getBiomeSource()));
+    }
+
+    @PostInit
+    public static void init() {
+        MeteorClient.EVENT_BUS.subscribe(WorldGenContext.class);
+    }
+
+    @EventHandler
+    private static void onSeedChanged(SeedChangedEvent event) {
+        CONTEXTS.clear();
+    }
+
+    public static WorldGenContext get(Seed seed, Dimension dimension) {
+        return get(seed.seed, seed.version, dimension);
+    }
+
+    public static WorldGenContext get(long seed, MCVersion version, Dimension dimension) {
+        return CONTEXTS.computeIfAbsent(new Key(seed, version, dimension), WorldGenContext::new);
+    }
+
+    public static Dimension toDimension(meteordevelopment.meteorclient.utils.world.Dimension dimension) {
+        return switch (dimension) {
+            case Overworld -> Dimension.OVERWORLD;
+            case Nether -> Dimension.NETHER;
+            case End -> Dimension.END;
+        };
+    }
+
+    /**
+     * A seedfinding chunk rand owned by the calling thread, callers must reseed it before use.
+     */
+    public static ChunkRand chunkRand() {
+        return CHUNK_RAND.get();
+    }
+
+    /**
+     * A vanilla chunk random owned by the calling thread, callers must reseed it before use.
+     */
+    public static ChunkRandom chunkRandom() {
+        return CHUNK_RANDOM.get();
+    }
+
+    public BiomeSource getBiomeSource() {
+        return biomeSource.get();
+    }
+
+    public TerrainGenerator getTerrainGenerator() {
+        return terrainGenerator.get();
+    }
+
+    /**
+     * Caches structure and feature instances, which only depend on the version.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getFeature(Object key, Function<MCVersion, T> factory) {
+        return (T) features.computeIfAbsent(key, k -> factory.apply(version));
+    }
+
+    private record Key(long seed, MCVersion version, Dimension dimension) {}
+}
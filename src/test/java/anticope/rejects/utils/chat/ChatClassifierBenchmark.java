@@ -0,0 +1,119 @@
+package anticope.rejects.utils.chat;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Times {@link ChatLineClassifier} against the regexes it replaced over a chat corpus, and
+ * checks that both read every line the same way.
+ */
+public class ChatClassifierBenchmark {
+    // the patterns ChatBotPlus tried one after another before the classifier
+    private static final Pattern CHAT_NAME_MSG = Pattern.compile(
+        "^\\s*[<\\[]?(?<name>[A-Za-z0-9_]{3,16})[>\\]]?\\s*[:»]\\s*(?<msg>.+)$"
+    );
+    private static final Pattern DM_ESS_FROM = Pattern.compile(
+        "(?i)^\\s*(?:from\\s+)?(?<name>[A-Za-z0-9_]{3,16})\\s*->\\s*(?:me|you)\\s*:\\s*(?<msg>.+)$"
+    );
+    private static final Pattern DM_VANILLA_FROM = Pattern.compile(
+        "(?i)^\\s*(?<name>[A-Za-z0-9_]{3,16})\\s+whispers\\s+to\\s+you:\\s*(?<msg>.+)$"
+    );
+    private static final Pattern DM_BRACKET = Pattern.compile(
+        "^\\s*\\[\\s*PM\\s*]\\s*(?<name>[A-Za-z0-9_]{3,16})\\s*[:»]\\s*(?<msg>.+)$"
+    );
+
+    /**
+     * Edge cases for the formats, the equivalence tests also run a full chat log.
+     */
+    public static final List<String> SAMPLE = List.of(
+        "<Steve> hello there",
+        "<Alex_01>: !help",
+        "[Notch] » !info",
+        "Herobrine: !leave Steve see you tomorrow",
+        "jeb_ whispers to you: !ping",
+        "Dinnerbone -> me: !inbox",
+        "from Grumm -> you: !leave Alex meet at spawn",
+        "[PM] Technoblade: !help",
+        "[ PM ] xX_Sniper_Xx » gg",
+        "Steve joined the game",
+        "Alex left the game",
+        "Notch has made the advancement [Stone Age]",
+        "Herobrine was slain by Zombie",
+        "[Server] Restarting in 5 minutes",
+        "Welcome to the server! Type /help for a list of commands.",
+        "You have 3 new mails, type /mail read to view them.",
+        "* Steve waves",
+        "-------------------------------",
+        "Players online: 12/100",
+        "[Server: Saved the game]",
+        "<a> too short name",
+        "<ThisNameIsWayTooLongToBeValid> hi",
+        "Steve whispers to you:",
+        "   <Padded>   :   spaced out   "
+    );
+
+    public record Result(int lines, int matched, int mismatches, double regexNsPerLine, double classifierNsPerLine) {
+        public double speedup() {
+            return classifierNsPerLine > 0 ? regexNsPerLine / classifierNsPerLine : 0;
+        }
+    }
+
+    /**
+     * @param rounds how many times to go over the corpus for each side, after a fifth as much warmup
+     */
+    public static Result run(List<String> corpus, int rounds) {
+        int matched = 0;
+        int mismatches = 0;
+        for (String line : corpus) {
+            ChatLineClassifier.Line expected = regex(line);
+            if (expected != null) matched++;
+            if (!Objects.equals(expected, ChatLineClassifier.classify(line))) mismatches++;
+        }
+
+        int warmup = Math.max(1, rounds / 5);
+        timeRegex(corpus, warmup);
+        timeClassifier(corpus, warmup);
+        long lines = (long) corpus.size() * rounds;
+        double regexNs = lines == 0 ? 0 : (double) timeRegex(corpus, rounds) / lines;
+        double classifierNs = lines == 0 ? 0 : (double) timeClassifier(corpus, rounds) / lines;
+        return new Result(corpus.size(), matched, mismatches, regexNs, classifierNs);
+    }
+
+    // the sink keeps the jit from dropping the work
+    private static int sink;
+
+    private static long timeRegex(List<String> corpus, int rounds) {
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String line : corpus) hash += Objects.hashCode(regex(line));
+        }
+        sink += hash;
+        return System.nanoTime() - start;
+    }
+
+    private static long timeClassifier(List<String> corpus, int rounds) {
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String line : corpus) hash += Objects.hashCode(ChatLineClassifier.classify(line));
+        }
+        sink += hash;
+        return System.nanoTime() - start;
+    }
+
+    private static ChatLineClassifier.Line regex(String raw) {
+        Matcher m;
+        if ((m = CHAT_NAME_MSG.matcher(raw)).find())
+            return new ChatLineClassifier.Line(m.group("name"), m.group("msg").trim(), false);
+        if ((m = DM_ESS_FROM.matcher(raw)).find())
+            return new ChatLineClassifier.Line(m.group("name"), m.group("msg").trim(), true);
+        if ((m = DM_VANILLA_FROM.matcher(raw)).find())
+            return new ChatLineClassifier.Line(m.group("name"), m.group("msg").trim(), true);
+        if ((m = DM_BRACKET.matcher(raw)).find())
+            return new ChatLineClassifier.Line(m.group("name"), m.group("msg").trim(), true);
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package anticope.rejects.utils.chat;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChatLineClassifierTest {
+    // pieces of the formats the patterns know, glued together at random
+    private static final String[] PARTS = {
+        "Steve", "Bob", "ab", "_", "1", "xX_Sniper_Xx", "ThisNameIsWayTooLongToBeValid",
+        "from", "FROM", "fıom", "ſrom", " ", "  ", "\t", "\n", "\r\n", " ",
+        "->", "me", "ME", "you", "YOU", ":", "»", "whispers", "WHISPERS", "whıspers", "whiſpers", "to", "tO", "you:",
+        "[", "]", "<", ">", "PM", "hi", "!leave Alex see you"
+    };
+
+    // the bundled log mixes the usual server formats, -Drejects.chatCorpus=<file> reads a recorded one instead
+    private static List<String> corpus() throws IOException {
+        String path = System.getProperty("rejects.chatCorpus");
+        if (path != null) return Files.readAllLines(Path.of(path), StandardCharsets.UTF_8);
+        try (InputStream in = ChatLineClassifierTest.class.getResourceAsStream("/chat/chat-corpus.txt")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    @Test
+    public void readsTheSampleLikeThePatterns() {
+        assertEquals(0, ChatClassifierBenchmark.run(ChatClassifierBenchmark.SAMPLE, 1).mismatches());
+    }
+
+    @Test
+    public void readsGeneratedLinesLikeThePatterns() {
+        Random random = new Random(0);
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder line = new StringBuilder();
+            int parts = random.nextInt(10);
+            for (int j = 0; j < parts; j++) line.append(PARTS[random.nextInt(PARTS.length)]);
+            corpus.add(line.toString());
+        }
+        assertEquals(0, ChatClassifierBenchmark.run(corpus, 1).mismatches());
+    }
+
+    @Test
+    public void readsTheCorpusLikeThePatterns() throws IOException {
+        assertEquals(0, ChatClassifierBenchmark.run(corpus(), 1).mismatches());
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark() throws IOException {
+        ChatClassifierBenchmark.Result result = ChatClassifierBenchmark.run(corpus(), 200);
+        System.out.printf("%d lines, %d of them chat. Regexes: %.0f ns/line, classifier: %.0f ns/line (%.1fx)%n",
+            result.lines(), result.matched(), result.regexNsPerLine(), result.classifierNsPerLine(), result.speedup());
+        assertEquals(0, result.mismatches());
+    }
+}
@@ -0,0 +1,150 @@
+package anticope.rejects.utils.server;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import net.minecraft.SharedConstants;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of fake status servers on loopback ports, so discovery can be measured against
+ * something that behaves the same every run. Hosts either answer after a delay, close the
+ * connection right away, or accept it and never say anything.
+ */
+public class FakeServerFarm implements AutoCloseable {
+    private final EventLoopGroup group = new NioEventLoopGroup(2, new DefaultThreadFactory("Rejects Fake Servers", true));
+    private final List<Channel> channels = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+    private final Set<InetSocketAddress> responsive = new HashSet<>();
+
+    /**
+     * @param dropShare      share of hosts that close every connection straight away
+     * @param blackholeShare share of hosts that accept connections and never answer
+     */
+    public FakeServerFarm(int count, int latencyMs, double dropShare, double blackholeShare, String motd, String version, long seed) throws InterruptedException {
+        Random random = new Random(seed);
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try {
+            for (int i = 0; i < count; i++) {
+                double roll = random.nextDouble();
+                Behaviour behaviour = roll < dropShare ? Behaviour.Drop : roll < dropShare + blackholeShare ? Behaviour.Blackhole : Behaviour.Respond;
+                String json = statusJson(motd + " #" + i, version, random.nextInt(100), 100);
+
+                Channel channel = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            if (behaviour == Behaviour.Drop) ch.close();
+                            else if (behaviour == Behaviour.Respond) ch.pipeline().addLast(new Responder(json, latencyMs));
+                        }
+                    })
+                    .bind(loopback, 0).sync().channel();
+                channels.add(channel);
+
+                InetSocketAddress address = (InetSocketAddress) channel.localAddress();
+                addresses.add(address);
+                if (behaviour == Behaviour.Respond) responsive.add(address);
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() {
+        return Collections.unmodifiableList(addresses);
+    }
+
+    /**
+     * The hosts a correct scan has to find.
+     */
+    public Set<InetSocketAddress> getResponsive() {
+        return Collections.unmodifiableSet(responsive);
+    }
+
+    @Override
+    public void close() {
+        channels.forEach(Channel::close);
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    }
+
+    private static String statusJson(String motd, String version, int online, int max) {
+        return "{\"version\":{\"name\":\"" + version + "\",\"protocol\":" + SharedConstants.getGameVersion().getProtocolVersion()
+            + "},\"players\":{\"max\":" + max + ",\"online\":" + online + "},\"description\":{\"text\":\"" + motd + "\"}}";
+    }
+
+    private enum Behaviour {
+        Respond,
+        Drop,
+        Blackhole
+    }
+
+    // just enough of the server side: skip the handshake, answer the status request, echo pings
+    private static class Responder extends ChannelInboundHandlerAdapter {
+        private final byte[] json;
+        private final int latencyMs;
+        private ByteBuf buffer;
+        private int packets;
+
+        private Responder(String json, int latencyMs) {
+            this.json = json.getBytes(StandardCharsets.UTF_8);
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf in = (ByteBuf) msg;
+            if (buffer == null) buffer = ctx.alloc().buffer();
+            buffer.writeBytes(in);
+            in.release();
+
+            while (true) {
+                buffer.markReaderIndex();
+                int length = StatusPingHandler.readVarInt(buffer);
+                if (length < 0 || buffer.readableBytes() < length) {
+                    buffer.resetReaderIndex();
+                    break;
+                }
+                ByteBuf packet = buffer.readSlice(length);
+                int id = StatusPingHandler.readVarInt(packet);
+                // the first packet is the handshake, which also has id 0
+                if (packets++ == 0) continue;
+
+                ByteBuf out = ctx.alloc().buffer();
+                if (id == 0x00) {
+                    StatusPingHandler.writeVarInt(out, 1 + StatusPingHandler.varIntSize(json.length) + json.length);
+                    StatusPingHandler.writeVarInt(out, 0x00);
+                    StatusPingHandler.writeVarInt(out, json.length);
+                    out.writeBytes(json);
+                } else {
+                    StatusPingHandler.writeVarInt(out, 9);
+                    StatusPingHandler.writeVarInt(out, 0x01);
+                    out.writeLong(packet.readLong());
+                }
+                ctx.executor().schedule(() -> ctx.writeAndFlush(out), latencyMs, TimeUnit.MILLISECONDS);
+            }
+            buffer.discardReadBytes();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (buffer != null) buffer.release();
+            buffer = null;
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
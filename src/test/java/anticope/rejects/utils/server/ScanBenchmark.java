@@ -0,0 +1,64 @@
+package anticope.rejects.utils.server;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the discovery scanner against a {@link FakeServerFarm} and checks what it found.
+ */
+public class ScanBenchmark {
+    private ScanBenchmark() {
+    }
+
+    public static CompletableFuture<Result> run(FakeServerFarm farm, int maxInFlight, int timeoutMs) {
+        CompletableFuture<Result> future = new CompletableFuture<>();
+        Map<InetSocketAddress, AtomicInteger> found = new ConcurrentHashMap<>();
+        ScanMetrics metrics = new ScanMetrics();
+        Runtime runtime = Runtime.getRuntime();
+        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        new ServerScanner(farm.getAddresses().iterator(), maxInFlight, timeoutMs, false, new ServerScanner.Listener() {
+            @Override
+            public void onResponse(InetSocketAddress address, MServerInfo info) {
+                found.computeIfAbsent(address, a -> new AtomicInteger()).incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(InetSocketAddress address) {
+            }
+
+            @Override
+            public void onFinished() {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
+                Set<InetSocketAddress> expected = farm.getResponsive();
+                int missing = 0, unexpected = 0, duplicates = 0;
+                for (InetSocketAddress address : expected) {
+                    if (!found.containsKey(address)) missing++;
+                }
+                for (Map.Entry<InetSocketAddress, AtomicInteger> entry : found.entrySet()) {
+                    if (!expected.contains(entry.getKey())) unexpected++;
+                    duplicates += entry.getValue().get() - 1;
+                }
+                future.complete(new Result(farm.getAddresses().size(), expected.size(), found.size(), missing, unexpected, duplicates,
+                    seconds, metrics.getStarted() / seconds, memoryAfter - memoryBefore, metrics));
+            }
+        }).metrics(metrics).start();
+        return future;
+    }
+
+    /**
+     * @param memoryDelta heap growth over the run in bytes, only a rough hint since the gc may run in between
+     */
+    public record Result(int targets, int responsive, int found, int missing, int unexpected, int duplicates,
+                         double seconds, double probesPerSecond, long memoryDelta, ScanMetrics metrics) {
+        public boolean isCorrect() {
+            return missing == 0 && unexpected == 0 && duplicates == 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package anticope.rejects.utils.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanDatabaseTest {
+    @TempDir
+    File dir;
+
+    private static InetSocketAddress address(int i) throws UnknownHostException {
+        return new InetSocketAddress(InetAddress.getByAddress(new byte[]{10, (byte) (i >> 16), (byte) (i >> 8), (byte) i}), 25565);
+    }
+
+    @Test
+    public void dropsTheOldestFailuresPastTheLimit() throws Exception {
+        ScanDatabase db = new ScanDatabase(new File(dir, "scans.bin"));
+        int old = ScanDatabase.MAX_DEAD / 8;
+        for (int i = 0; i < old; i++) db.recordFailure(address(i));
+        Thread.sleep(5);
+        for (int i = old; i <= ScanDatabase.MAX_DEAD; i++) db.recordFailure(address(i));
+
+        assertTrue(db.size() <= ScanDatabase.MAX_DEAD);
+        for (int i = 0; i < old; i++) assertTrue(db.get(address(i)).isEmpty());
+        db.recordFailure(address(0));
+        assertFalse(db.shouldProbe(address(0), ScanDatabase.DEAD_TTL));
+    }
+
+    @Test
+    public void savesAndLoadsFailures() throws Exception {
+        File file = new File(dir, "scans.bin");
+        ScanDatabase db = new ScanDatabase(file);
+        for (int i = 0; i < 1000; i++) db.recordFailure(address(i));
+        db.save();
+
+        ScanDatabase loaded = new ScanDatabase(file);
+        assertEquals(1000, loaded.size());
+        assertFalse(loaded.get(address(500)).orElseThrow().alive());
+        assertFalse(loaded.shouldProbe(address(500), ScanDatabase.DEAD_TTL));
+        assertTrue(loaded.shouldProbe(address(1000), ScanDatabase.DEAD_TTL));
+    }
+}
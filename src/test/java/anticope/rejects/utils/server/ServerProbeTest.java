@@ -0,0 +1,28 @@
+package anticope.rejects.utils.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerProbeTest {
+    private static final int TIMEOUT_MS = 500;
+
+    @Test
+    public void silentHostTimesOutOnce() throws Exception {
+        try (FakeServerFarm farm = new FakeServerFarm(1, 0, 0, 1, "Silent", "Silent", 0)) {
+            long start = System.nanoTime();
+            AtomicReference<ServerProbe.Failure> failure = new AtomicReference<>();
+            MServerInfo info = new ServerProbe(TIMEOUT_MS).probe(farm.getAddresses().get(0), TIMEOUT_MS, null, failure::set).get(10, TimeUnit.SECONDS);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            assertNull(info);
+            assertEquals(ServerProbe.Failure.Timeout, failure.get());
+            // the legacy pings would each wait out the timeout again
+            assertTrue(elapsedMs < 2 * TIMEOUT_MS, "took " + elapsedMs + " ms");
+        }
+    }
+}
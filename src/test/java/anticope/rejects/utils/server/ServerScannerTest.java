@@ -0,0 +1,25 @@
+package anticope.rejects.utils.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerScannerTest {
+    private static final int SERVERS = 256;
+    private static final int CONCURRENCY = 64;
+    private static final int LATENCY_MS = 20;
+    private static final int TIMEOUT_MS = 1000;
+
+    @Test
+    public void findsEveryResponsiveHostOnce() throws Exception {
+        try (FakeServerFarm farm = new FakeServerFarm(SERVERS, LATENCY_MS, 0.1, 0.05, "Rejects benchmark", "Benchmark", 0)) {
+            ScanBenchmark.Result result = ScanBenchmark.run(farm, CONCURRENCY, TIMEOUT_MS).get(60, TimeUnit.SECONDS);
+            System.out.printf("Scanned %d hosts in %.2fs (%.0f probes/s), heap grew by %d KiB.%n",
+                result.targets(), result.seconds(), result.probesPerSecond(), result.memoryDelta() / 1024);
+            assertTrue(result.isCorrect(), () -> String.format("%d missing, %d unexpected, %d duplicates",
+                result.missing(), result.unexpected(), result.duplicates()));
+        }
+    }
+}
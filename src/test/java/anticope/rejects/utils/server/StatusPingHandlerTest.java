@@ -0,0 +1,33 @@
+package anticope.rejects.utils.server;
+
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StatusPingHandlerTest {
+    private static String text(String json) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        StatusPingHandler.readText(new JsonReader(new StringReader(json)), sb);
+        return sb.toString();
+    }
+
+    @Test
+    public void readsPlainAndNestedDescriptions() throws IOException {
+        assertEquals("A Minecraft Server", text("\"A Minecraft Server\""));
+        assertEquals("Hello world", text("{\"text\":\"Hello \",\"extra\":[{\"text\":\"world\",\"bold\":true}]}"));
+    }
+
+    @Test
+    public void readsBareBooleansAndNumbers() throws IOException {
+        assertEquals("true1", text("[true,1]"));
+    }
+
+    @Test
+    public void skipsNullText() throws IOException {
+        assertEquals("x", text("{\"text\":null,\"extra\":[\"x\"]}"));
+    }
+}